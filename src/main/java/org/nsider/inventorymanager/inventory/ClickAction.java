@@ -0,0 +1,17 @@
+package org.nsider.inventorymanager.inventory;
+
+import org.bukkit.event.inventory.InventoryClickEvent;
+
+/*
+ * The ClickAction interface is run when a player clicks the slot of an item it was added with.
+ */
+@FunctionalInterface
+public interface ClickAction {
+
+    /**
+     * Handles a click on the item.
+     *
+     * @param event The click event.
+     */
+    void onClick(InventoryClickEvent event);
+}
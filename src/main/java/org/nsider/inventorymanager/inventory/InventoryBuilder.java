@@ -1,13 +1,20 @@
 package org.nsider.inventorymanager.inventory;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.nsider.inventorymanager.item.ItemBuilder;
 import org.nsider.inventorymanager.item.ItemData;
+import org.nsider.inventorymanager.item.ItemRegistry;
+import org.nsider.inventorymanager.utils.LongObjectMap;
+import org.nsider.inventorymanager.utils.MaterialUtils;
+import org.nsider.inventorymanager.utils.SlotMask;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -16,14 +23,24 @@ import java.util.concurrent.ConcurrentHashMap;
  * The InventoryBuilder class is used to create custom inventories and add items to them.
  */
 @Getter
-public class InventoryBuilder {
+public class InventoryBuilder implements InventoryHolder {
 
-    private ConcurrentHashMap<ItemStack, List<Integer>> itemsMap;
-    private Inventory inventory;
-    @Setter private List<ItemData> itemDataList;
+    @Getter(AccessLevel.NONE) private final LongObjectMap<List<ItemData>> itemsById;
+    @Getter(AccessLevel.NONE) private final Set<ItemData> unbuilt;
+    @Getter(AccessLevel.NONE) private volatile Inventory inventory;
+    private volatile long lastAccess;
+    private List<ItemData> itemDataList;
     @Setter private String inventoryName;
     @Setter private int inventorySize;
     @Setter private String baseInventoryName;
+    @Setter private boolean perViewer;
+    @Getter(AccessLevel.NONE) private boolean loaded;
+    @Getter(AccessLevel.NONE) private boolean pinned;
+    @Getter(AccessLevel.NONE) private boolean registered;
+    @Getter(AccessLevel.PACKAGE) private final InventoryLayout layout;
+    @Getter(AccessLevel.NONE) private final Map<UUID, ViewerInventory> viewerInventories;
+    @Getter(AccessLevel.NONE) private final Map<ItemData, ClickAction> clickActions;
+    @Getter(AccessLevel.NONE) private final ItemNameIndex nameIndex;
 
     /**
      * Constructs an InventoryBuilder with the specified name and size.
@@ -32,48 +49,251 @@ public class InventoryBuilder {
      * @param inventorySize The size of the inventory.
      */
     public InventoryBuilder(String inventoryName, int inventorySize) {
-        this.itemsMap = new ConcurrentHashMap<>();
+        this.itemsById = new LongObjectMap<>();
+        this.unbuilt = Collections.newSetFromMap(new IdentityHashMap<>());
         this.itemDataList = new ArrayList<>();
         this.inventoryName = inventoryName;
         this.inventorySize = inventorySize;
-        this.inventory = Bukkit.createInventory(null, inventorySize, inventoryName);
+        this.inventory = null;
+        this.lastAccess = System.currentTimeMillis();
         this.baseInventoryName = null;
+        // Items are only pinned once the builder is saved, so builders that are never saved do not hold the registry.
+        this.pinned = false;
+        this.layout = new InventoryLayout(this);
+        this.perViewer = false;
+        this.loaded = false;
+        this.viewerInventories = new ConcurrentHashMap<>();
+        this.clickActions = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.nameIndex = new ItemNameIndex();
+    }
+
+    /**
+     * Gets the Bukkit inventory of this builder.
+     * The inventory is only created when it is first used, or used again after it was unloaded, and is then
+     * filled with the current layout of this inventory and its base inventories.
+     *
+     * @return The inventory of this builder.
+     * @throws IllegalStateException If the inventory has to be created and its chain of base inventories contains a cycle.
+     */
+    public Inventory getInventory() {
+        lastAccess = System.currentTimeMillis();
+        Inventory current = inventory;
+        return current != null ? current : allocate();
+    }
+
+    /*
+     * Creates the Bukkit inventory and fills it from the layout, unless another thread already did.
+     */
+    private synchronized Inventory allocate() {
+        if (inventory == null) {
+            Inventory created = Bukkit.createInventory(this, inventorySize, inventoryName);
+            created.setContents(layout.merged().items);
+            InventoryHandler.getInstance().indexInventory(created, this);
+            inventory = created;
+            loaded = true;
+        }
+        return inventory;
+    }
+
+    /**
+     * Checks if the Bukkit inventory of this builder currently exists.
+     *
+     * @return True if the inventory was created and not unloaded since, false otherwise.
+     */
+    public boolean isAllocated() {
+        return inventory != null;
+    }
+
+    /**
+     * Releases the Bukkit inventory and the cached layout if no player is viewing the inventory.
+     * The items stay part of this builder, the inventory is rebuilt from them on its next use.
+     *
+     * @return True if the inventory was released, false if it is in use or was not created.
+     */
+    public synchronized boolean unload() {
+        Inventory current = inventory;
+        if (current == null || !current.getViewers().isEmpty()) return false;
+
+        inventory = null;
+        loaded = false;
+        InventoryHandler.getInstance().unindexInventory(current);
+        // Per-viewer inventories are refreshed from the layout, so it is kept while any of them is open.
+        if (viewerInventories.isEmpty()) layout.release();
+        return true;
+    }
+
+    /**
+     * Releases the Bukkit inventory if it was not used for the given time and no player is viewing it.
+     *
+     * @param idleMillis The time in milliseconds the inventory has to be unused.
+     * @return True if the inventory was released, false otherwise.
+     */
+    public boolean unloadIfIdle(long idleMillis) {
+        return System.currentTimeMillis() - lastAccess >= idleMillis && unload();
+    }
+
+    /**
+     * Replaces every item of the inventory with the given list of ItemData.
+     * The items are created and registered as one batch first, so every ItemData carries its current registry ID.
+     * Click actions of ItemData that are not part of the new list are removed.
+     *
+     * @param itemDataList The new list of ItemData, used as is.
+     */
+    public synchronized void setItemDataList(List<ItemData> itemDataList) {
+        // ItemData can be part of both lists, so the IDs they were tracked with are saved before registering.
+        List<ItemData> previous = this.itemDataList;
+        long[] previousIds = new long[previous.size()];
+        for (int i = 0; i < previousIds.length; i++) {
+            previousIds[i] = previous.get(i).getID();
+        }
+
+        // Pinned until tracked, so a registry cap can not evict the new items in between.
+        ItemBuilder.fromItemData(itemDataList, true);
+
+        try {
+            Set<ItemData> kept = Collections.newSetFromMap(new IdentityHashMap<>(itemDataList.size()));
+            kept.addAll(itemDataList);
+            for (int i = 0; i < previousIds.length; i++) {
+                ItemData data = previous.get(i);
+                if (!unbuilt.contains(data)) untrack(data, previousIds[i]);
+                if (!kept.contains(data)) clickActions.remove(data);
+            }
+            unbuilt.clear();
+            nameIndex.clear();
+
+            this.itemDataList = itemDataList;
+            for (ItemData data : itemDataList) {
+                track(data);
+                nameIndex.add(data);
+            }
+            layout.invalidate();
+        } finally {
+            ItemRegistry registry = ItemBuilder.getRegistry();
+            for (ItemData data : itemDataList) {
+                registry.unpin(data.getID());
+            }
+        }
     }
 
     /**
      * Adds an item to the inventory.
+     * The ItemStack of the item is created the next time the layout is compiled (when the inventory is opened or loaded,
+     * or during a warm-up), together with every other item added since. Until then the ItemData has the ID -1.
      *
      * @param data The ItemData containing information about the item to be added.
+     * @throws IllegalArgumentException If the item uses a slot outside of the inventory or an invalid material.
      */
-    public void addItem(ItemData data) {
-        itemsMap.put(ItemBuilder.fromItemData(data), data.getSlots());
+    public synchronized void addItem(ItemData data) {
+        validate(data);
+        data.setID(-1);
         itemDataList.add(data);
+        nameIndex.add(data);
+        unbuilt.add(data);
+        layout.invalidate();
+    }
+
+    /**
+     * Adds an item to the inventory that runs the given action when one of its slots is clicked.
+     * Clicks are only dispatched while the InventoryListener is registered.
+     *
+     * @param data   The ItemData containing information about the item to be added.
+     * @param action The action to run when the item is clicked.
+     * @throws IllegalArgumentException If the item uses a slot outside of the inventory or an invalid material.
+     */
+    public synchronized void addItem(ItemData data, ClickAction action) {
+        addItem(data);
+        clickActions.put(data, action);
+    }
+
+    /**
+     * Adds several items to the inventory as one batch.
+     * The items are created and registered together and the new layout becomes visible at once.
+     *
+     * @param items The ItemData containing information about the items to be added.
+     * @throws IllegalArgumentException If one of the items uses a slot outside of the inventory or an invalid material.
+     */
+    public void addItems(Collection<ItemData> items) {
+        Transaction transaction = begin();
+        for (ItemData data : items) {
+            transaction.add(data);
+        }
+        transaction.commit();
+    }
+
+    /**
+     * Starts a transaction that collects added and removed items and applies them together on commit.
+     * Until the transaction is committed, the inventory and its layout are not changed.
+     *
+     * @return The new transaction.
+     */
+    public Transaction begin() {
+        return new Transaction();
     }
 
     /**
      * Removes an item from the inventory.
+     * Only the slots of the item are cleared in the inventory, showing the items of the base inventory again.
+     * Has to be called on the main thread while the inventory is in use.
      *
      * @param data The ItemData containing information about the item to be removed.
      */
     public void removeItem(ItemData data) {
-        ItemStack itemToRemove = ItemBuilder.fromItemData(data);
-        itemsMap.remove(itemToRemove);
-        itemDataList.remove(data);
-        if(inventory.contains(itemToRemove)) { inventory.remove(itemToRemove); }
+        removeItems(Collections.singletonList(data));
     }
 
     /**
-     * Saves the inventory name and InventoryBuilder object to the InventoryHandler
-     * This method should be called right after you've finished adding all ItemData to the itemsMap(addItem) for that inventory.
+     * Removes several items from the inventory in a single pass over its items.
+     * Only the slots of the removed items are cleared in the inventory, showing the items of the base inventory again.
+     * Has to be called on the main thread while the inventory is in use.
+     *
+     * @param items The ItemData containing information about the items to be removed.
      */
-    public void save() {
-        InventoryHandler handler = InventoryHandler.getInstance();
+    public synchronized void removeItems(Collection<ItemData> items) {
+        Set<ItemData> removed = detachItems(items);
+        if (!removed.isEmpty()) writeSlots(layout.remove(removed));
+    }
+
+    /*
+     * Removes the given ItemData from the item list, the indexes and click actions in a single pass over the item list.
+     * Returns the ItemData instances that were removed.
+     */
+    private Set<ItemData> detachItems(Collection<ItemData> items) {
+        if (items.isEmpty()) return Collections.emptySet();
+
+        Set<ItemData> requested = Collections.newSetFromMap(new IdentityHashMap<>(items.size()));
+        requested.addAll(items);
+        Set<ItemData> removed = Collections.newSetFromMap(new IdentityHashMap<>(items.size()));
+
+        for (Iterator<ItemData> iterator = itemDataList.iterator(); iterator.hasNext(); ) {
+            ItemData existing = iterator.next();
+            if (requested.remove(existing)) {
+                iterator.remove();
+                removed.add(existing);
+            }
+        }
+        if (!requested.isEmpty()) {
+            // ItemData that were not added themselves remove an equal ItemData, like List.remove(Object) does.
+            for (ItemData data : requested) {
+                int index = itemDataList.indexOf(data);
+                if (index >= 0) removed.add(itemDataList.remove(index));
+            }
+        }
 
-        if (handler.isAdded(inventoryName)) {
-            handler.removeInventory(inventoryName);
+        for (ItemData data : removed) {
+            if (!unbuilt.remove(data)) untrack(data, data.getID());
+            nameIndex.remove(data);
+            clickActions.remove(data);
         }
+        return removed;
+    }
 
-        handler.addInventory(inventoryName, this);
+    /**
+     * Saves the inventory name and InventoryBuilder object to the InventoryHandler
+     * This method should be called right after you've finished adding all ItemData (addItem) for that inventory.
+     */
+    public void save() {
+        // Replaces any builder previously saved under this name, which releases that builder's pinned items.
+        InventoryHandler.getInstance().addInventory(inventoryName, this);
     }
 
 
@@ -87,80 +307,608 @@ public class InventoryBuilder {
     }
 
     /**
-     * Clears the inventory and adds the items from the itemsMap to their respective slots.
-     * This method should be called before opening the inventory for a player.
+     * Replaces the contents of the inventory with its items and the items of every base inventory in the chain.
+     * The merged layout is cached and only rebuilt if this inventory or one of its base inventories changed.
+     * If the Bukkit inventory was not created yet, only the layout is prepared and the inventory is filled once it is
+     * first opened, so this method is only needed to show items added to an inventory that is already in use.
+     * Has to be called on the main thread while the inventory is in use, as it writes to the Bukkit inventory.
+     *
+     * @throws IllegalStateException If the chain of base inventories contains a cycle.
      */
     public void load() {
-        inventory.clear();
-
-        if (hasBaseInventory()) {
-            InventoryBuilder baseInventory = InventoryHandler.getInstance().getInventoryBuilder(baseInventoryName);
+        ItemStack[] items = layout.merged().items;
+        Inventory current = inventory;
+        // The inventory copies every item it receives, so the cached layout can be handed over as is.
+        if (current != null) current.setContents(items);
+        loaded = true;
 
-            if (baseInventory != null) {
-                for (Map.Entry<ItemStack, List<Integer>> entry : baseInventory.getItemsMap().entrySet()) {
-                    ItemStack baseItem = entry.getKey();
-                    List<Integer> baseSlots = entry.getValue();
-                    for (int slot : baseSlots) {
-                        inventory.setItem(slot, baseItem.clone());
-                    }
-                }
-            }
+        for (ViewerInventory viewerInventory : viewerInventories.values()) {
+            viewerInventory.refresh();
         }
+    }
 
-        for (Map.Entry<ItemStack, List<Integer>> entry : itemsMap.entrySet()) {
-            ItemStack item = entry.getKey();
-            List<Integer> slots = entry.getValue();
 
-            for (int slot : slots) {
-                inventory.setItem(slot, item.clone());
+    /**
+     * Clears the inventory and all of its items.
+     * Has to be called on the main thread while the inventory is in use.
+     */
+    public synchronized void clear() {
+        for (ItemData data : itemDataList) {
+            if (!unbuilt.contains(data)) untrack(data, data.getID());
+        }
+        unbuilt.clear();
+        itemsById.clear();
+        Inventory current = inventory;
+        if (current != null) current.clear();
+        itemDataList.clear();
+        nameIndex.clear();
+        clickActions.clear();
+        layout.invalidate();
+        // Items added after clearing only show up after the next load, like in a new inventory.
+        loaded = false;
+    }
+
+    /**
+     * Gets the slots of every item in the inventory by the registry ID of the item.
+     * Items that look the same share an ID, so the slots of all their ItemData are combined instead of overwritten.
+     * The ItemStack of an ID can be retrieved with ItemBuilder.getItemForId.
+     * Up to 1.1.2 this returned a live ConcurrentHashMap keyed by ItemStack, see the README for migrating.
+     *
+     * @return An unmodifiable snapshot mapping each item ID to its slots.
+     */
+    public synchronized Map<Long, List<Integer>> getItemsMap() {
+        // Every item needs its registry ID, so items that were not built yet are built now.
+        buildItems();
+        Map<Long, List<Integer>> snapshot = new HashMap<>(itemsById.size() * 2);
+        itemsById.forEach((id, sameItem) -> {
+            long slots = 0;
+            for (ItemData data : sameItem) {
+                slots |= data.getSlotMask();
             }
+            snapshot.put(id, Collections.unmodifiableList(SlotMask.toList(slots)));
+        });
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Gets the slots used by the items of this inventory, base inventories are not included.
+     *
+     * @return The mask of used slots, where bit n is set when slot n is used.
+     */
+    public synchronized long getOccupiedSlotMask() {
+        long mask = 0;
+        for (ItemData data : itemDataList) {
+            mask |= data.getSlotMask();
         }
+        return mask;
     }
 
+    /**
+     * Finds the lowest slot that is not used by an item of this inventory, base inventories are not included.
+     *
+     * @return The first free slot, or -1 if every slot is used.
+     */
+    public int findFreeSlot() {
+        return SlotMask.firstFree(getOccupiedSlotMask(), inventorySize);
+    }
 
     /**
-     * Clears the inventory and the itemsMap
+     * Finds every item of this inventory that uses at least one of the slots of the given ItemData.
+     * The given ItemData itself is not included.
+     *
+     * @param data The ItemData to check for conflicts.
+     * @return The overlapping ItemData, or an empty list if there are none.
      */
-    public void clear() {
-        itemsMap.clear();
-        inventory.clear();
-        itemDataList.clear();
+    public synchronized List<ItemData> getOverlappingItems(ItemData data) {
+        long mask = data.getSlotMask();
+        List<ItemData> overlapping = new ArrayList<>();
+        for (ItemData existing : itemDataList) {
+            if (existing != data && SlotMask.overlaps(existing.getSlotMask(), mask)) overlapping.add(existing);
+        }
+        return overlapping;
     }
 
     /**
      * Finds the ItemData with the specified name.
+     * Names are indexed, so this does not depend on the amount of items. Renaming an ItemData in place is picked up
+     * by updateItem.
      *
      * @param targetName The name to look for in the data.
      * @return The ItemData containing information about the item.                
      */
     public Optional<ItemData> getItemDataWithName(String targetName) {
-        return itemDataList.stream()
-                .filter(itemData -> itemData.getName().equals(targetName))
-                .findFirst();
+        return Optional.ofNullable(nameIndex.get(targetName));
+    }
+
+    /**
+     * Finds the ItemData with the specified name, ignoring color codes (both {@code &} and section sign) and case.
+     * The index for this lookup is built on its first use.
+     *
+     * @param targetName The name to look for in the data.
+     * @return The ItemData containing information about the item.
+     */
+    public Optional<ItemData> getItemDataWithPlainName(String targetName) {
+        return Optional.ofNullable(nameIndex.getPlain(targetName));
+    }
+
+    /**
+     * Finds every ItemData whose name starts with the specified prefix, ignoring color codes and case.
+     * Useful for tab completion. The index for this lookup is built on its first use.
+     *
+     * @param prefix The start of the names to look for.
+     * @return The matching ItemData sorted by their plain name, or an empty list if none match.
+     */
+    public List<ItemData> getItemDataWithNamePrefix(String prefix) {
+        return nameIndex.getWithPrefix(prefix);
     }
 
     /**
-     * Updates an item with the updated data
+     * Updates an item with the updated data.
+     * The data can either be the ItemData that was added (changed in place) or a new ItemData with the same ID.
+     * If the inventory is loaded, only the slots of the item are rewritten in the inventory and every per-viewer inventory.
+     * An item that was not built yet, e.g. because building it failed, is shown like a newly added item instead.
+     * Has to be called on the main thread while the inventory is in use.
      *
      * @param data The ItemData containing information about the item
+     * @throws IllegalArgumentException If an item that was not built yet uses a slot outside of the inventory or an
+     *                                  invalid material.
      */
-    public void updateItem(ItemData data) {
+    public synchronized void updateItem(ItemData data) {
+        if (unbuilt.contains(data)) {
+            // The item is not part of any compiled layout yet, the next compile builds it with its new content.
+            validate(data);
+            nameIndex.update(data, data);
+            layout.invalidate();
+            return;
+        }
+
         long id = data.getID();
 
-        ItemStack item = ItemBuilder.getItemForId(id);
-        if(item != null) {
-            itemsMap.remove(item);
-            itemsMap.put(ItemBuilder.fromItemData(data), data.getSlots());
+        if(itemsById.containsKey(id)) {
+            ItemData previous = replaceItemData(data, id);
+            if (previous == null) return;
+
+            ItemStack updated = ItemBuilder.fromItemData(Collections.singletonList(data), true).get(0);
+
+            // Track the new item before releasing the old one so an unchanged item is never briefly evictable.
+            track(data);
+            ItemBuilder.getRegistry().unpin(data.getID());
+            untrack(previous, id);
+            nameIndex.update(previous, data);
+            writeSlots(layout.update(previous, data, updated, clickActions.get(data)));
         }
     }
 
+    /*
+     * Finds the ItemData in itemDataList that the given data updates, replacing it if it is a different instance.
+     * Returns the replaced ItemData, or null if this inventory does not contain the item.
+     */
+    private ItemData replaceItemData(ItemData data, long id) {
+        List<ItemData> sameItem = itemsById.get(id);
+        if (sameItem == null) return null;
+        for (ItemData existing : sameItem) {
+            if (existing == data) return data;
+        }
+
+        ItemData existing = sameItem.get(0);
+        for (int i = 0; i < itemDataList.size(); i++) {
+            if (itemDataList.get(i) == existing) {
+                itemDataList.set(i, data);
+                break;
+            }
+        }
+        ClickAction action = clickActions.remove(existing);
+        if (action != null) clickActions.put(data, action);
+        return existing;
+    }
+
+    /*
+     * Writes the given slots of the merged layout to the loaded inventory and every per-viewer inventory.
+     */
+    private void writeSlots(long dirtySlots) {
+        if (dirtySlots == 0) return;
+        if (dirtySlots == InventoryLayout.ALL_SLOTS) {
+            if (loaded) load();
+            return;
+        }
+
+        Inventory current = inventory;
+        // Nothing shows the layout, so it is left to be compiled on its next use.
+        if ((!loaded || current == null) && viewerInventories.isEmpty()) return;
+
+        ItemStack[] items = layout.merged().items;
+        if (loaded && current != null) {
+            for (long slots = dirtySlots; slots != 0; slots &= slots - 1) {
+                int slot = Long.numberOfTrailingZeros(slots);
+                current.setItem(slot, items[slot]);
+            }
+        }
+        for (ViewerInventory viewerInventory : viewerInventories.values()) {
+            viewerInventory.patch(dirtySlots, items);
+        }
+    }
+
+    /**
+     * Sets the action that runs when one of the slots of the given ItemData is clicked.
+     *
+     * @param data   The ItemData of an item in this inventory.
+     * @param action The action to run, or null to remove the action.
+     */
+    public synchronized void setClickAction(ItemData data, ClickAction action) {
+        if (action == null) {
+            clickActions.remove(data);
+        } else {
+            clickActions.put(data, action);
+        }
+        layout.invalidate();
+    }
+
+    /**
+     * Gets the action that runs when one of the slots of the given ItemData is clicked.
+     *
+     * @param data The ItemData of an item in this inventory.
+     * @return The action of the item, or null if it has none.
+     */
+    public ClickAction getClickAction(ItemData data) {
+        return clickActions.get(data);
+    }
+
+    /**
+     * Gets the ItemData shown in the given slot, including items of the base inventories.
+     *
+     * @param slot The slot to look up.
+     * @return The ItemData in the slot, or null if the slot is empty or out of range.
+     */
+    public ItemData getItemDataAt(int slot) {
+        ItemData[] data = layout.merged().data;
+        return slot < 0 || slot >= data.length ? null : data[slot];
+    }
+
+    /**
+     * Runs the action of the clicked slot, if it has one. Called by the InventoryListener.
+     *
+     * @param event The click event, its raw slot must be a slot of this inventory.
+     */
+    public void handleClick(InventoryClickEvent event) {
+        ClickAction[] actions = layout.merged().actions;
+        int slot = event.getRawSlot();
+
+        if (slot >= 0 && slot < actions.length && actions[slot] != null) {
+            actions[slot].onClick(event);
+        }
+    }
+
+    /**
+     * Called when the inventory is added to the InventoryHandler.
+     * Pins the items of every ItemData so the item registry can not evict them, and adds them to the global item index.
+     * Items that were evicted while the builder was not saved are registered again first.
+     */
+    synchronized void attach() {
+        if (!pinned) {
+            pinned = true;
+            ItemRegistry registry = ItemBuilder.getRegistry();
+            for (ItemData data : itemDataList) {
+                // Items that were not built yet are pinned once they are built.
+                if (unbuilt.contains(data)) continue;
+
+                if (registry.getItemForId(data.getID()) == null) {
+                    rebuildItem(data);
+                } else {
+                    registry.pin(data.getID());
+                }
+            }
+        }
+
+        if (!registered) {
+            InventoryHandler handler = InventoryHandler.getInstance();
+            for (ItemData data : itemDataList) {
+                if (!unbuilt.contains(data)) handler.indexItem(data);
+            }
+            registered = true;
+        }
+    }
+
+    /**
+     * Called when the inventory is removed from the InventoryHandler.
+     * Releases the pins held by this inventory and removes its items from the global item index.
+     */
+    synchronized void detach() {
+        if (pinned) {
+            ItemRegistry registry = ItemBuilder.getRegistry();
+            for (ItemData data : itemDataList) {
+                if (!unbuilt.contains(data)) registry.unpin(data.getID());
+            }
+            pinned = false;
+        }
+
+        if (registered) {
+            InventoryHandler handler = InventoryHandler.getInstance();
+            for (ItemData data : itemDataList) {
+                if (!unbuilt.contains(data)) handler.unindexItem(data, data.getID());
+            }
+            registered = false;
+        }
+    }
+
+    /*
+     * Creates and registers the ItemStacks of every ItemData added since the last compile as one batch and tracks them.
+     * Called by the layout while compiling, so the items are built on the thread that compiles the layout,
+     * e.g. on the fork-join pool during a warm-up. If the batch fails, the items are built one by one, so an item that
+     * can not be built stays unbuilt (and out of the layout) without holding back the others.
+     */
+    synchronized void buildItems() {
+        if (unbuilt.isEmpty()) return;
+
+        // Built in the order they were added, so IDs are handed out like before.
+        List<ItemData> batch = new ArrayList<>(unbuilt.size());
+        for (ItemData data : itemDataList) {
+            if (unbuilt.contains(data)) batch.add(data);
+        }
+
+        // Pinned until tracked, so a registry cap can not evict the new items in between.
+        try {
+            ItemBuilder.fromItemData(batch, true);
+        } catch (RuntimeException e) {
+            List<ItemData> built = new ArrayList<>(batch.size());
+            for (ItemData data : batch) {
+                try {
+                    ItemBuilder.fromItemData(Collections.singletonList(data), true);
+                    built.add(data);
+                } catch (RuntimeException itemException) {
+                    itemException.printStackTrace();
+                }
+            }
+            batch = built;
+        }
+
+        ItemRegistry registry = ItemBuilder.getRegistry();
+        for (ItemData data : batch) {
+            unbuilt.remove(data);
+            track(data);
+            registry.unpin(data.getID());
+        }
+    }
+
+    /*
+     * Checks if the item of the given ItemData was not built yet, e.g. because building it failed.
+     * Called while holding the lock of this builder.
+     */
+    boolean isUnbuilt(ItemData data) {
+        return unbuilt.contains(data);
+    }
+
+    /*
+     * Checks the slots and the material of an ItemData before it is added, so a bad item is rejected by the call that
+     * adds it instead of failing the compile of the layout later.
+     *
+     * @throws IllegalArgumentException If the item uses a slot outside of the inventory or an invalid material.
+     */
+    private void validate(ItemData data) {
+        layout.slotMask(data);
+
+        String material = data.getMaterial();
+        if (material == null || !material.contains("head-")) MaterialUtils.getMaterial(material);
+    }
+
+    /*
+     * Rebuilds the item of an ItemData whose registry entry was evicted and moves its tracking to the new ID,
+     * so the ID index, the pins and the global item index stay keyed by the ID the ItemData carries.
+     * Called while holding the lock of this builder, by attach() and by the layout while compiling.
+     */
+    ItemStack rebuildItem(ItemData data) {
+        long previousId = data.getID();
+        ItemStack item = ItemBuilder.fromItemData(Collections.singletonList(data), true).get(0);
+        untrack(data, previousId);
+        track(data);
+        ItemBuilder.getRegistry().unpin(data.getID());
+        return item;
+    }
+
+    /*
+     * Indexes the given ItemData by its ID, pins its item and indexes it globally while this inventory is registered.
+     */
+    private void track(ItemData data) {
+        List<ItemData> sameItem = itemsById.get(data.getID());
+        if (sameItem == null) {
+            sameItem = new ArrayList<>(1);
+            itemsById.put(data.getID(), sameItem);
+        }
+        sameItem.add(data);
+
+        if (pinned) ItemBuilder.getRegistry().pin(data.getID());
+        if (registered) InventoryHandler.getInstance().indexItem(data);
+    }
+
+    /*
+     * Reverts track(ItemData) for the ID the ItemData had when it was tracked.
+     */
+    private void untrack(ItemData data, long id) {
+        List<ItemData> sameItem = itemsById.get(id);
+        if (sameItem != null) {
+            for (int i = 0; i < sameItem.size(); i++) {
+                if (sameItem.get(i) == data) {
+                    sameItem.remove(i);
+                    break;
+                }
+            }
+            if (sameItem.isEmpty()) itemsById.remove(id);
+        }
+
+        if (pinned) ItemBuilder.getRegistry().unpin(id);
+        if (registered) InventoryHandler.getInstance().unindexItem(data, id);
+    }
+
 
     /**
      * Opens the inventory for the specified player.
+     * In per-viewer mode the player gets their own copy of the inventory, which is released once it is closed.
+     * If the player is already viewing their copy, it is refreshed from the current layout instead of reopened.
+     * Otherwise the shared inventory is created on the first call.
      *
      * @param p The player to open the inventory for.
      */
     public void openInventory(Player p) {
-        p.openInventory(inventory);
+        if (perViewer) {
+            lastAccess = System.currentTimeMillis();
+            ViewerInventory viewerInventory = getViewerInventory(p);
+            // Reopening would close the copy first, and closing releases it while the player keeps viewing it.
+            if (p.getOpenInventory().getTopInventory() == viewerInventory.getInventory()) {
+                viewerInventory.refresh();
+            } else {
+                p.openInventory(viewerInventory.getInventory());
+            }
+        } else {
+            p.openInventory(getInventory());
+        }
+    }
+
+    /**
+     * Gets the per-viewer inventory of the given player, creating it from the current layout if needed.
+     * Changes made to it are only visible to that player.
+     *
+     * @param p The player viewing the inventory.
+     * @return The inventory of the player.
+     */
+    public ViewerInventory getViewerInventory(Player p) {
+        return viewerInventories.computeIfAbsent(p.getUniqueId(), viewerId -> new ViewerInventory(this, viewerId));
+    }
+
+    /**
+     * Gets all per-viewer inventories that are currently open.
+     *
+     * @return Unmodifiable collection of the per-viewer inventories.
+     */
+    public Collection<ViewerInventory> getViewerInventories() {
+        return Collections.unmodifiableCollection(viewerInventories.values());
+    }
+
+    /**
+     * Releases the given per-viewer inventory. Called by the InventoryListener once the player closed it.
+     *
+     * @param viewerInventory The per-viewer inventory to release.
+     */
+    public void releaseViewer(ViewerInventory viewerInventory) {
+        if (viewerInventories.remove(viewerInventory.getViewerId(), viewerInventory)) {
+            InventoryHandler.getInstance().unindexInventory(viewerInventory.getInventory());
+        }
+    }
+
+    /**
+     * The Transaction class collects items to add to and remove from an InventoryBuilder.
+     * Every change is applied while holding the lock of the builder, so readers never see a half-built layout.
+     * If the inventory is in use, the new items are created, registered and pinned as one batch on commit and the new
+     * layout is published in one step. The batch pins keep the registry from evicting the new items before they are
+     * tracked by the builder. Otherwise the new items are built as one batch with the next compile of the layout.
+     */
+    public class Transaction {
+        private final List<ItemData> added;
+        private final Map<ItemData, ClickAction> addedActions;
+        private final List<ItemData> removed;
+        private boolean committed;
+
+        private Transaction() {
+            this.added = new ArrayList<>();
+            this.addedActions = new IdentityHashMap<>();
+            this.removed = new ArrayList<>();
+            this.committed = false;
+        }
+
+        /**
+         * Adds an item to the inventory on commit.
+         *
+         * @param data The ItemData containing information about the item to be added.
+         * @return This transaction.
+         */
+        public Transaction add(ItemData data) {
+            checkOpen();
+            added.add(data);
+            return this;
+        }
+
+        /**
+         * Adds an item that runs the given action when one of its slots is clicked to the inventory on commit.
+         *
+         * @param data   The ItemData containing information about the item to be added.
+         * @param action The action to run when the item is clicked.
+         * @return This transaction.
+         */
+        public Transaction add(ItemData data, ClickAction action) {
+            add(data);
+            addedActions.put(data, action);
+            return this;
+        }
+
+        /**
+         * Removes an item from the inventory on commit. Removals are applied before the additions.
+         *
+         * @param data The ItemData containing information about the item to be removed.
+         * @return This transaction.
+         */
+        public Transaction remove(ItemData data) {
+            checkOpen();
+            removed.add(data);
+            return this;
+        }
+
+        /**
+         * Applies every collected change to the inventory.
+         * If the inventory is loaded, only the changed slots are rewritten in the inventory and per-viewer inventories.
+         * Has to be called on the main thread while the inventory is in use, the changes can be collected on any thread.
+         *
+         * @throws IllegalArgumentException If one of the added items uses a slot outside of the inventory or an invalid
+         *                                  material.
+         * @throws IllegalStateException    If the transaction was already committed.
+         */
+        public void commit() {
+            checkOpen();
+            committed = true;
+
+            // Validate everything (and build the items of an inventory in use) before touching the builder,
+            // so a bad item leaves it unchanged.
+            long dirtySlots = 0;
+            for (ItemData data : added) {
+                validate(data);
+                dirtySlots |= data.getSlotMask();
+            }
+            boolean build = isAllocated() || !viewerInventories.isEmpty();
+            if (build) ItemBuilder.fromItemData(added, true);
+
+            try {
+                synchronized (InventoryBuilder.this) {
+                    Set<ItemData> detached = detachItems(removed);
+                    if (!detached.isEmpty()) dirtySlots |= layout.remove(detached);
+
+                    for (ItemData data : added) {
+                        nameIndex.add(data);
+                        if (build) {
+                            track(data);
+                        } else {
+                            data.setID(-1);
+                            unbuilt.add(data);
+                        }
+                    }
+                    itemDataList.addAll(added);
+                    clickActions.putAll(addedActions);
+
+                    layout.invalidate();
+                    if (build) layout.own();
+                    writeSlots(dirtySlots);
+                }
+            } finally {
+                if (build) {
+                    // Saved builders now hold their own pins, the items of unsaved builders become evictable again.
+                    ItemRegistry registry = ItemBuilder.getRegistry();
+                    for (ItemData data : added) {
+                        registry.unpin(data.getID());
+                    }
+                }
+            }
+        }
+
+        private void checkOpen() {
+            if (committed) {
+                throw new IllegalStateException("Transaction for inventory " + inventoryName + " was already committed");
+            }
+        }
     }
 }
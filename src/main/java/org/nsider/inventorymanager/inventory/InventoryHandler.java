@@ -1,13 +1,31 @@
 package org.nsider.inventorymanager.inventory;
 
+import com.google.common.collect.MapMaker;
 import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.nsider.inventorymanager.item.ItemData;
+import org.nsider.inventorymanager.utils.LongObjectMap;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * The InventoryHandler class manages the collection of custom inventories.
  * It allows adding, removing, and retrieving inventories by name.
+ * The collection is an immutable snapshot that is replaced on every change, so lookups never lock and always see
+ * a complete set of inventories, even while another thread is saving or reloading them.
  */
 public class InventoryHandler {
     /**
@@ -16,14 +34,46 @@ public class InventoryHandler {
      */
     @Getter private static final InventoryHandler instance = new InventoryHandler();
 
-    @Getter private Map<String, InventoryBuilder> inventories;
+    private volatile Snapshot snapshot;
+
+    // Serializes the changes to the snapshot and the attaching and detaching of the builders.
+    private final Object writeLock;
+
+    // Every ItemData of the registered inventories, keyed by the registry ID of its item.
+    private final LongObjectMap<List<ItemData>> itemDataIndex;
+
+    // The InventoryBuilder or ViewerInventory of every inventory created by the API, compared by identity.
+    // Keys and values are weak, so discarded inventories and builders drop out without being removed.
+    private final Map<Inventory, InventoryHolder> inventoryIndex;
 
     /*
      * Private constructor to enforce singleton.
      * Initializes the map of inventories.
      */
     private InventoryHandler() {
-        inventories = new HashMap<>();
+        snapshot = new Snapshot(Collections.emptyMap(), 0);
+        writeLock = new Object();
+        itemDataIndex = new LongObjectMap<>();
+        inventoryIndex = new MapMaker().weakKeys().weakValues().makeMap();
+    }
+
+    /**
+     * Gets every added inventory by name.
+     *
+     * @return An unmodifiable snapshot of the inventories, later changes are not reflected in it.
+     */
+    public Map<String, InventoryBuilder> getInventories() {
+        return snapshot.inventories;
+    }
+
+    /**
+     * Gets the version of the collection, which increases with every change to it.
+     * Can be used to check if the inventories changed since a previous call.
+     *
+     * @return The current version.
+     */
+    public long getVersion() {
+        return snapshot.version;
     }
 
     /**
@@ -33,7 +83,32 @@ public class InventoryHandler {
      * @param builder The InventoryBuilder instance representing the custom inventory.
      */
     public void addInventory(String name, InventoryBuilder builder) {
-        inventories.put(name, builder);
+        addInventories(Collections.singletonMap(name, builder));
+    }
+
+    /**
+     * Adds several custom inventories to the collection, which become visible together.
+     *
+     * @param builders The InventoryBuilder instances by the names of their inventories.
+     */
+    public void addInventories(Map<String, InventoryBuilder> builders) {
+        synchronized (writeLock) {
+            Map<String, InventoryBuilder> inventories = new HashMap<>(snapshot.inventories);
+            inventories.putAll(builders);
+            publish(inventories);
+        }
+    }
+
+    /**
+     * Replaces the whole collection with the given inventories in one step.
+     * Readers see either the old or the new inventories, never a mix of both.
+     *
+     * @param builders The InventoryBuilder instances by the names of their inventories.
+     */
+    public void replaceAll(Map<String, InventoryBuilder> builders) {
+        synchronized (writeLock) {
+            publish(new HashMap<>(builders));
+        }
     }
 
     /**
@@ -42,7 +117,13 @@ public class InventoryHandler {
      * @param name The name of the inventory to be removed.
      */
     public void removeInventory(String name) {
-        inventories.remove(name);
+        synchronized (writeLock) {
+            if (!snapshot.inventories.containsKey(name)) return;
+
+            Map<String, InventoryBuilder> inventories = new HashMap<>(snapshot.inventories);
+            inventories.remove(name);
+            publish(inventories);
+        }
     }
 
     /**
@@ -53,7 +134,34 @@ public class InventoryHandler {
      *         or null if the inventory with the specified name is not found.
      */
     public InventoryBuilder getInventoryBuilder(String name) {
-        return inventories.get(name);
+        return snapshot.inventories.get(name);
+    }
+
+    /**
+     * Obtains the InventoryBuilder instance that created the given inventory.
+     * Per-viewer inventories resolve to the InventoryBuilder they were copied from.
+     * The lookup compares the inventory by identity, so it does not depend on titles or the amount of inventories.
+     *
+     * @param inventory The inventory to resolve, e.g. from an InventoryClickEvent.
+     * @return The InventoryBuilder of the inventory, or null if the inventory was not created by this API.
+     */
+    public InventoryBuilder getInventoryBuilder(Inventory inventory) {
+        InventoryHolder holder = inventoryIndex.get(inventory);
+        if (holder instanceof ViewerInventory) {
+            return ((ViewerInventory) holder).getTemplate();
+        }
+        return (InventoryBuilder) holder;
+    }
+
+    /**
+     * Obtains the per-viewer inventory that owns the given inventory.
+     *
+     * @param inventory The inventory to resolve, e.g. from an InventoryCloseEvent.
+     * @return The ViewerInventory of the inventory, or null if it is not a per-viewer inventory.
+     */
+    public ViewerInventory getViewerInventory(Inventory inventory) {
+        InventoryHolder holder = inventoryIndex.get(inventory);
+        return holder instanceof ViewerInventory ? (ViewerInventory) holder : null;
     }
 
     /**
@@ -63,13 +171,219 @@ public class InventoryHandler {
      * @return True if the inventory is present in the collection, false otherwise.
      */
     public boolean isAdded(String name) {
-        return inventories.containsKey(name);
+        return snapshot.inventories.containsKey(name);
     }
 
     /**
      * Clears all inventories from the collection.
      */
     public void clearAllInventories() {
-        inventories.clear();
+        synchronized (writeLock) {
+            publish(new HashMap<>());
+        }
+    }
+
+    /**
+     * Releases the Bukkit inventories of every added inventory that was not used for the given time and that no
+     * player is viewing. Released inventories are rebuilt from their items when they are used again.
+     * Has to be called on the main thread.
+     *
+     * @param idleMillis The time in milliseconds an inventory has to be unused.
+     * @return The amount of released inventories.
+     */
+    public int unloadIdle(long idleMillis) {
+        int unloaded = 0;
+        for (InventoryBuilder builder : snapshot.inventories.values()) {
+            if (builder.unloadIfIdle(idleMillis)) unloaded++;
+        }
+        return unloaded;
+    }
+
+    /**
+     * Starts a repeating task that releases inventories that were not used for the given time.
+     *
+     * @param plugin     The plugin that owns the task.
+     * @param idleMillis The time in milliseconds an inventory has to be unused.
+     * @return The started task, which can be cancelled to stop unloading.
+     */
+    public BukkitTask startIdleUnloading(Plugin plugin, long idleMillis) {
+        // Checks twice per idle period, but not more than once per second (20 ticks).
+        long periodTicks = Math.max(20, idleMillis / 100);
+        return Bukkit.getScheduler().runTaskTimer(plugin, () -> unloadIdle(idleMillis), periodTicks, periodTicks);
+    }
+
+    /**
+     * Warms up every added inventory on the common fork-join pool.
+     *
+     * @param plugin   The plugin used to schedule the final step on the main thread.
+     * @param listener Notified after each inventory was prepared, may be null.
+     * @return A future completed on the main thread with the timing of every inventory.
+     * @see #warmUp(Plugin, ForkJoinPool, WarmUpListener)
+     */
+    public CompletableFuture<WarmUpReport> warmUp(Plugin plugin, WarmUpListener listener) {
+        return warmUp(plugin, ForkJoinPool.commonPool(), listener);
+    }
+
+    /**
+     * Warms up every added inventory. The inventories are prepared in parallel on the given pool: the ItemStacks of
+     * items added since their last compile are created (material resolution, meta and skull textures) and registered,
+     * then their layouts are compiled. The prepared layouts are then loaded into the Bukkit inventories in one step
+     * on the main thread, inventories that were not created yet are filled once they are first opened.
+     * Inventories that fail to prepare, e.g. because of a cyclic base inventory chain, are reported and not loaded.
+     * Inventories that fail to load are reported as well, without holding back the others.
+     *
+     * @param plugin   The plugin used to schedule the final step on the main thread.
+     * @param pool     The pool to prepare the inventories on.
+     * @param listener Notified after each inventory was prepared, may be null.
+     * @return A future completed on the main thread with the timing of every inventory.
+     */
+    public CompletableFuture<WarmUpReport> warmUp(Plugin plugin, ForkJoinPool pool, WarmUpListener listener) {
+        List<WarmUpReport.Entry> entries = new ArrayList<>(snapshot.inventories.size());
+        for (Map.Entry<String, InventoryBuilder> inventory : snapshot.inventories.entrySet()) {
+            entries.add(new WarmUpReport.Entry(inventory.getKey(), inventory.getValue()));
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger completed = new AtomicInteger();
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[entries.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            WarmUpReport.Entry entry = entries.get(i);
+            tasks[i] = CompletableFuture.runAsync(() -> {
+                long prepareStart = System.nanoTime();
+                Throwable failure = null;
+                try {
+                    // Builds the pending items of the inventory and its base inventories and compiles the layout.
+                    // Shared base inventories are compiled once, their own layout is cached behind the builder lock.
+                    entry.getBuilder().getLayout().merged();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                entry.prepared(System.nanoTime() - prepareStart, failure);
+                int done = completed.incrementAndGet();
+                if (listener != null) listener.onProgress(entry, done, entries.size());
+            }, pool);
+        }
+
+        CompletableFuture<WarmUpReport> result = new CompletableFuture<>();
+        CompletableFuture.allOf(tasks).whenComplete((ignored, error) -> {
+            long prepareNanos = System.nanoTime() - start;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    long commitStart = System.nanoTime();
+                    for (WarmUpReport.Entry entry : entries) {
+                        if (!entry.isSuccessful()) continue;
+
+                        long entryStart = System.nanoTime();
+                        Throwable failure = null;
+                        try {
+                            entry.getBuilder().load();
+                        } catch (RuntimeException e) {
+                            failure = e;
+                        }
+                        entry.committed(System.nanoTime() - entryStart, failure);
+                    }
+                    result.complete(new WarmUpReport(entries, prepareNanos, System.nanoTime() - commitStart));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        });
+        return result;
+    }
+
+    /*
+     * Publishes the given inventories as the new snapshot. The new builders are attached before they become visible,
+     * the builders that are no longer part of the collection are detached afterwards.
+     * Builders of the previous snapshot are already attached, so saving one inventory only attaches that inventory.
+     */
+    private void publish(Map<String, InventoryBuilder> inventories) {
+        Snapshot previous = snapshot;
+        Set<InventoryBuilder> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.addAll(inventories.values());
+        Set<InventoryBuilder> attached = Collections.newSetFromMap(new IdentityHashMap<>());
+        attached.addAll(previous.inventories.values());
+
+        for (InventoryBuilder builder : current) {
+            if (!attached.contains(builder)) builder.attach();
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(inventories), previous.version + 1);
+
+        for (InventoryBuilder builder : previous.inventories.values()) {
+            if (!current.contains(builder)) builder.detach();
+        }
+    }
+
+    /**
+     * Finds the ItemData of a registered inventory whose item has the given registry ID.
+     *
+     * @param id The registry ID of the item.
+     * @return The ItemData of the item, or null if no registered inventory contains it.
+     */
+    public ItemData findItemData(long id) {
+        synchronized (itemDataIndex) {
+            List<ItemData> dataList = itemDataIndex.get(id);
+            return dataList == null ? null : dataList.get(0);
+        }
+    }
+
+    /*
+     * Adds an inventory created by an InventoryBuilder or ViewerInventory to the inventory index.
+     */
+    void indexInventory(Inventory inventory, InventoryHolder holder) {
+        inventoryIndex.put(inventory, holder);
+    }
+
+    /*
+     * Removes an inventory from the inventory index before it would be garbage collected.
+     */
+    void unindexInventory(Inventory inventory) {
+        inventoryIndex.remove(inventory);
+    }
+
+    /*
+     * Adds the given ItemData to the item index under its current ID.
+     */
+    void indexItem(ItemData data) {
+        synchronized (itemDataIndex) {
+            List<ItemData> dataList = itemDataIndex.get(data.getID());
+            if (dataList == null) {
+                dataList = new ArrayList<>(1);
+                itemDataIndex.put(data.getID(), dataList);
+            }
+            dataList.add(data);
+        }
+    }
+
+    /*
+     * Removes the given ItemData instance from the item index entry of the given ID.
+     */
+    void unindexItem(ItemData data, long id) {
+        synchronized (itemDataIndex) {
+            List<ItemData> dataList = itemDataIndex.get(id);
+            if (dataList == null) return;
+
+            for (int i = 0; i < dataList.size(); i++) {
+                if (dataList.get(i) == data) {
+                    dataList.remove(i);
+                    break;
+                }
+            }
+            if (dataList.isEmpty()) {
+                itemDataIndex.remove(id);
+            }
+        }
+    }
+
+    /*
+     * An immutable version of the collection of inventories.
+     */
+    private static final class Snapshot {
+        private final Map<String, InventoryBuilder> inventories;
+        private final long version;
+
+        private Snapshot(Map<String, InventoryBuilder> inventories, long version) {
+            this.inventories = inventories;
+            this.version = version;
+        }
     }
 }
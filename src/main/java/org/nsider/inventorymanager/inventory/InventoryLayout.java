@@ -0,0 +1,282 @@
+package org.nsider.inventorymanager.inventory;
+
+import org.bukkit.inventory.ItemStack;
+import org.nsider.inventorymanager.item.ItemBuilder;
+import org.nsider.inventorymanager.item.ItemData;
+import org.nsider.inventorymanager.utils.SlotMask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * The InventoryLayout class caches the compiled slot layouts of an InventoryBuilder.
+ * The own layout only contains the items of the builder, the merged layout also contains the items of its
+ * whole chain of base inventories. Every builder has a version that changes with its items, the merged layout
+ * remembers the chain and versions it was built from, so only layouts depending on a changed builder are rebuilt.
+ */
+class InventoryLayout {
+
+    /*
+     * Dirty mask meaning that every slot has to be rewritten.
+     */
+    static final long ALL_SLOTS = -1L;
+
+    private final InventoryBuilder owner;
+    private final AtomicLong version;
+    private volatile Compiled own;
+    private volatile Merged merged;
+
+    InventoryLayout(InventoryBuilder owner) {
+        this.owner = owner;
+        this.version = new AtomicLong();
+    }
+
+    /*
+     * Discards the own layout of the builder, which also invalidates every merged layout that contains it.
+     */
+    void invalidate() {
+        own = null;
+        version.incrementAndGet();
+    }
+
+    /*
+     * Drops the compiled layouts to free their memory. Unlike invalidate() the builder did not change,
+     * so merged layouts of other builders that contain this one stay valid.
+     */
+    void release() {
+        own = null;
+        merged = null;
+    }
+
+    /*
+     * Replaces the item of an ItemData in the compiled layouts without recompiling them.
+     * If the ItemData kept its slots, the own and merged layouts are patched in place (copy-on-write), otherwise they
+     * are invalidated and recompiled on their next use. Returns the mask of slots whose contents may have changed.
+     */
+    long update(ItemData previous, ItemData data, ItemStack item, ClickAction action) {
+        Compiled current = own;
+        Merged cached = merged;
+        boolean mergedValid = cached != null && cached.isValid();
+
+        if (current == null) {
+            invalidate();
+            return ALL_SLOTS;
+        }
+
+        long oldMask = 0;
+        for (int slot = 0; slot < current.data.length; slot++) {
+            if (current.data[slot] == previous) oldMask |= 1L << slot;
+        }
+        long newMask = slotMask(data);
+
+        if (oldMask != newMask) {
+            // Freed slots may expose other items, so the layout is recompiled, but only these slots can differ.
+            invalidate();
+            return oldMask | newMask;
+        }
+
+        long patchedVersion = version.incrementAndGet();
+        own = current.patch(newMask, item, data, action);
+        if (mergedValid && cached.chain[0] == owner) {
+            long[] versions = cached.versions.clone();
+            versions[0] = patchedVersion;
+            merged = new Merged(cached.compiled.patch(newMask, item, data, action), cached.chain, versions);
+        }
+        return newMask;
+    }
+
+    /*
+     * Gets the slots of the given ItemData as a mask.
+     *
+     * @throws IllegalArgumentException If one of the slots is outside of the inventory.
+     */
+    long slotMask(ItemData data) {
+        long mask = data.getSlotMask();
+        long outside = mask & ~SlotMask.range(owner.getInventorySize());
+        if (outside != 0) {
+            throw new IllegalArgumentException("Slot " + SlotMask.highest(outside) + " is outside of inventory " + owner.getInventoryName());
+        }
+        return mask;
+    }
+
+    /*
+     * Discards the layout for the removal of the given ItemData and returns the mask of slots they occupied.
+     * The slots are read from the compiled layout when there is one, so ItemData whose slots were changed after
+     * compiling still report the slots they are shown in.
+     */
+    long remove(Set<ItemData> removed) {
+        Compiled current = own;
+        long mask = 0;
+
+        if (current != null) {
+            for (int slot = 0; slot < current.data.length; slot++) {
+                if (current.data[slot] != null && removed.contains(current.data[slot])) mask |= 1L << slot;
+            }
+        } else {
+            for (ItemData data : removed) {
+                mask |= data.getSlotMask();
+            }
+            mask &= SlotMask.range(owner.getInventorySize());
+        }
+
+        invalidate();
+        return mask;
+    }
+
+    /*
+     * Gets the items, ItemData and click actions of the builder itself, indexed by slot.
+     * When several ItemData use the same slot, the one added last is used.
+     */
+    Compiled own() {
+        Compiled compiled = own;
+        if (compiled != null) return compiled;
+
+        // Compiling holds the lock of the builder, so it never sees the item list while a batch is being applied.
+        synchronized (owner) {
+            compiled = own;
+            if (compiled != null) return compiled;
+
+            // Items added since the last compile are created here, so a warm-up creates them on its pool.
+            owner.buildItems();
+            long compiledVersion = version.get();
+            compiled = new Compiled(owner.getInventorySize());
+            for (ItemData data : owner.getItemDataList()) {
+                // Items that could not be built are left out of the layout.
+                if (owner.isUnbuilt(data)) continue;
+
+                ItemStack item = ItemBuilder.getItemForId(data.getID());
+                // The item was evicted, e.g. because the builder is not saved and its items are not pinned.
+                if (item == null) item = owner.rebuildItem(data);
+                ClickAction action = owner.getClickAction(data);
+
+                for (long slots = slotMask(data); slots != 0; slots &= slots - 1) {
+                    int slot = Long.numberOfTrailingZeros(slots);
+                    compiled.items[slot] = item;
+                    compiled.data[slot] = data;
+                    compiled.actions[slot] = action;
+                }
+            }
+
+            // Only publish the layout if the builder did not change while it was compiled.
+            if (version.get() == compiledVersion) own = compiled;
+            return compiled;
+        }
+    }
+
+    /*
+     * Gets the items, ItemData and click actions of the builder and all of its base inventories, indexed by slot.
+     * Items of a builder override the items of its base inventory.
+     */
+    Compiled merged() {
+        Merged cached = merged;
+        if (cached != null && cached.isValid()) return cached.compiled;
+
+        List<InventoryBuilder> chain = resolveChain();
+        long[] versions = new long[chain.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = chain.get(i).getLayout().version.get();
+        }
+
+        Compiled compiled = new Compiled(owner.getInventorySize());
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            Compiled layer = chain.get(i).getLayout().own();
+            int length = Math.min(layer.items.length, compiled.items.length);
+            for (int slot = 0; slot < length; slot++) {
+                if (layer.items[slot] != null) {
+                    compiled.items[slot] = layer.items[slot];
+                    compiled.data[slot] = layer.data[slot];
+                    compiled.actions[slot] = layer.actions[slot];
+                }
+            }
+        }
+
+        merged = new Merged(compiled, chain.toArray(new InventoryBuilder[0]), versions);
+        return compiled;
+    }
+
+    /*
+     * Resolves the builder followed by its base inventories, closest base first.
+     */
+    private List<InventoryBuilder> resolveChain() {
+        InventoryHandler handler = InventoryHandler.getInstance();
+        List<InventoryBuilder> chain = new ArrayList<>(4);
+
+        InventoryBuilder current = owner;
+        while (current != null) {
+            for (InventoryBuilder link : chain) {
+                if (link == current) {
+                    throw new IllegalStateException("Inventory " + owner.getInventoryName() + " has a cyclic base inventory chain at " + current.getInventoryName());
+                }
+            }
+            chain.add(current);
+            current = current.hasBaseInventory() ? handler.getInventoryBuilder(current.getBaseInventoryName()) : null;
+        }
+        return chain;
+    }
+
+    /*
+     * Slot indexed arrays of a compiled layout. The arrays are shared and must not be modified.
+     */
+    static final class Compiled {
+        final ItemStack[] items;
+        final ItemData[] data;
+        final ClickAction[] actions;
+
+        private Compiled(int size) {
+            this.items = new ItemStack[size];
+            this.data = new ItemData[size];
+            this.actions = new ClickAction[size];
+        }
+
+        private Compiled(ItemStack[] items, ItemData[] data, ClickAction[] actions) {
+            this.items = items;
+            this.data = data;
+            this.actions = actions;
+        }
+
+        /*
+         * Copies this layout with the given slots set to the given item.
+         */
+        private Compiled patch(long slots, ItemStack item, ItemData itemData, ClickAction action) {
+            Compiled patched = new Compiled(items.clone(), data.clone(), actions.clone());
+            for (; slots != 0; slots &= slots - 1) {
+                int slot = Long.numberOfTrailingZeros(slots);
+                patched.items[slot] = item;
+                patched.data[slot] = itemData;
+                patched.actions[slot] = action;
+            }
+            return patched;
+        }
+    }
+
+    /*
+     * A merged layout together with the builders and versions it was built from.
+     */
+    private static final class Merged {
+        private final Compiled compiled;
+        private final InventoryBuilder[] chain;
+        private final long[] versions;
+
+        private Merged(Compiled compiled, InventoryBuilder[] chain, long[] versions) {
+            this.compiled = compiled;
+            this.chain = chain;
+            this.versions = versions;
+        }
+
+        /*
+         * Walks the current base chain and checks that it still consists of the same builders at the same versions.
+         */
+        private boolean isValid() {
+            InventoryHandler handler = InventoryHandler.getInstance();
+            InventoryBuilder current = chain[0];
+
+            for (int i = 0; i < chain.length; i++) {
+                if (current != chain[i] || current.getLayout().version.get() != versions[i]) return false;
+                current = current.hasBaseInventory() ? handler.getInventoryBuilder(current.getBaseInventoryName()) : null;
+            }
+            return current == null;
+        }
+    }
+}
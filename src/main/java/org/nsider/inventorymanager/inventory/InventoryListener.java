@@ -0,0 +1,47 @@
+package org.nsider.inventorymanager.inventory;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.inventory.Inventory;
+
+/*
+ * The InventoryListener class handles the inventory events needed by the inventories of this API.
+ * It has to be registered once by the plugin using the API.
+ */
+public class InventoryListener implements Listener {
+
+    /**
+     * Dispatches clicks on the slots of an InventoryBuilder (or one of its per-viewer inventories) to their actions.
+     *
+     * @param event The click event.
+     */
+    @EventHandler
+    public void onInventoryClick(InventoryClickEvent event) {
+        // Resolved through the identity index, getHolder can create a block state snapshot for container inventories.
+        Inventory inventory = event.getInventory();
+        InventoryBuilder builder = InventoryHandler.getInstance().getInventoryBuilder(inventory);
+        if (builder == null) return;
+
+        // Raw slots past the size of the top inventory belong to the player's own inventory.
+        if (event.getRawSlot() >= 0 && event.getRawSlot() < inventory.getSize()) {
+            builder.handleClick(event);
+        }
+    }
+
+    /**
+     * Releases the per-viewer inventory of a player once they close it.
+     *
+     * @param event The close event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        ViewerInventory viewerInventory = InventoryHandler.getInstance().getViewerInventory(event.getInventory());
+
+        if (viewerInventory != null) {
+            viewerInventory.getTemplate().releaseViewer(viewerInventory);
+        }
+    }
+}
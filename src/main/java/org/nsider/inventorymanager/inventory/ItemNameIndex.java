@@ -0,0 +1,161 @@
+package org.nsider.inventorymanager.inventory;
+
+import org.nsider.inventorymanager.item.ItemData;
+
+import java.util.*;
+
+/*
+ * The ItemNameIndex class indexes the ItemData of an InventoryBuilder by name.
+ * The exact index is always kept, the plain index (color codes stripped, lower case) and the sorted prefix index
+ * are only built on their first lookup and kept in sync from then on.
+ */
+class ItemNameIndex {
+
+    private static final String COLOR_CODES = "0123456789abcdefklmnorx";
+
+    private final Map<String, List<ItemData>> exact;
+    private final Map<ItemData, String> indexedNames;
+    private Map<String, List<ItemData>> plain;
+    private TreeMap<String, List<ItemData>> prefixes;
+
+    ItemNameIndex() {
+        this.exact = new HashMap<>();
+        this.indexedNames = new IdentityHashMap<>();
+    }
+
+    /*
+     * Adds the ItemData under its current name.
+     */
+    synchronized void add(ItemData data) {
+        String name = data.getName();
+        indexedNames.put(data, name);
+        if (name == null) return;
+
+        exact.computeIfAbsent(name, key -> new ArrayList<>(1)).add(data);
+        if (plain != null) addPlain(data, name);
+    }
+
+    /*
+     * Removes the ItemData under the name it was indexed with.
+     */
+    synchronized void remove(ItemData data) {
+        if (!indexedNames.containsKey(data)) return;
+
+        String name = indexedNames.remove(data);
+        if (name == null) return;
+
+        removeFrom(exact, name, data);
+        if (plain != null) {
+            String key = normalize(name);
+            if (removeFrom(plain, key, data)) prefixes.remove(key);
+        }
+    }
+
+    /*
+     * Re-indexes an ItemData whose name may have changed, or that replaces the previous ItemData.
+     */
+    synchronized void update(ItemData previous, ItemData data) {
+        if (previous == data && Objects.equals(indexedNames.get(data), data.getName())) return;
+
+        remove(previous);
+        add(data);
+    }
+
+    synchronized void clear() {
+        exact.clear();
+        indexedNames.clear();
+        plain = null;
+        prefixes = null;
+    }
+
+    /*
+     * Gets the first indexed ItemData with exactly the given name.
+     */
+    synchronized ItemData get(String name) {
+        List<ItemData> matches = exact.get(name);
+        return matches == null ? null : matches.get(0);
+    }
+
+    /*
+     * Gets the first indexed ItemData whose name matches the given name, ignoring color codes and case.
+     */
+    synchronized ItemData getPlain(String name) {
+        List<ItemData> matches = plainIndex().get(normalize(name));
+        return matches == null ? null : matches.get(0);
+    }
+
+    /*
+     * Gets every indexed ItemData whose name starts with the given prefix, ignoring color codes and case.
+     * The ItemData are sorted by name.
+     */
+    synchronized List<ItemData> getWithPrefix(String prefix) {
+        plainIndex();
+        String key = normalize(prefix);
+
+        List<ItemData> result = new ArrayList<>();
+        for (List<ItemData> matches : prefixes.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            result.addAll(matches);
+        }
+        return result;
+    }
+
+    private Map<String, List<ItemData>> plainIndex() {
+        if (plain == null) {
+            plain = new HashMap<>();
+            prefixes = new TreeMap<>();
+            for (Map.Entry<ItemData, String> entry : indexedNames.entrySet()) {
+                if (entry.getValue() != null) addPlain(entry.getKey(), entry.getValue());
+            }
+        }
+        return plain;
+    }
+
+    private void addPlain(ItemData data, String name) {
+        String key = normalize(name);
+        List<ItemData> matches = plain.get(key);
+        if (matches == null) {
+            matches = new ArrayList<>(1);
+            plain.put(key, matches);
+            // Both indexes share the list, so updating one keeps the other in sync.
+            prefixes.put(key, matches);
+        }
+        matches.add(data);
+    }
+
+    /*
+     * Removes the ItemData from the list of the key and returns true if that list became empty.
+     */
+    private static boolean removeFrom(Map<String, List<ItemData>> index, String key, ItemData data) {
+        List<ItemData> matches = index.get(key);
+        if (matches == null) return false;
+
+        for (int i = 0; i < matches.size(); i++) {
+            if (matches.get(i) == data) {
+                matches.remove(i);
+                break;
+            }
+        }
+        if (matches.isEmpty()) {
+            index.remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Strips legacy color codes (both the section sign and ampersand forms) and lower cases the name.
+     */
+    static String normalize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c == '\u00A7' || c == '&') && i + 1 < name.length()
+                    && COLOR_CODES.indexOf(Character.toLowerCase(name.charAt(i + 1))) >= 0) {
+                i++;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+}
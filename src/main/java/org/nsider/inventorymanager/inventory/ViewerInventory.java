@@ -0,0 +1,127 @@
+package org.nsider.inventorymanager.inventory;
+
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/*
+ * The ViewerInventory class is the inventory of a single player for an InventoryBuilder in per-viewer mode.
+ * It starts from the compiled layout of the builder and only copies that layout once the player's view is changed.
+ * Like the Bukkit inventory it fills, it is only changed on the main thread.
+ */
+public class ViewerInventory implements InventoryHolder {
+
+    @Getter private final InventoryBuilder template;
+    @Getter private final UUID viewerId;
+    @Getter private final Inventory inventory;
+    private ItemStack[] contents;
+    private boolean copied;
+    private long overriddenSlots;
+
+    /**
+     * Constructs a ViewerInventory for the given player from the current layout of the template.
+     *
+     * @param template The InventoryBuilder used as template.
+     * @param viewerId The UUID of the player viewing the inventory.
+     */
+    ViewerInventory(InventoryBuilder template, UUID viewerId) {
+        this.template = template;
+        this.viewerId = viewerId;
+        this.inventory = Bukkit.createInventory(this, template.getInventorySize(), template.getInventoryName());
+        InventoryHandler.getInstance().indexInventory(inventory, this);
+        refresh();
+    }
+
+    /**
+     * Changes the item in a slot for this viewer only. The slot keeps this item when the template is reloaded.
+     *
+     * @param slot The slot to change.
+     * @param item The item to put into the slot, or null to empty it.
+     */
+    public void setItem(int slot, ItemStack item) {
+        if (slot < 0 || slot >= contents.length) {
+            throw new IllegalArgumentException("Slot " + slot + " is outside of inventory " + template.getInventoryName());
+        }
+
+        if (!copied) {
+            contents = contents.clone();
+            copied = true;
+        }
+        contents[slot] = item;
+        overriddenSlots |= 1L << slot;
+        inventory.setItem(slot, item);
+    }
+
+    /**
+     * Gets the item this viewer sees in the given slot.
+     * Slots that were not changed for this viewer share their item with the layout of the template,
+     * so a copy is returned. Use {@link #setItem(int, ItemStack)} to change the slot.
+     *
+     * @param slot The slot to get the item from.
+     * @return A copy of the item in the slot, or null if the slot is empty.
+     */
+    public ItemStack getItem(int slot) {
+        ItemStack item = contents[slot];
+        return item == null ? null : item.clone();
+    }
+
+    /**
+     * Drops every change made for this viewer and shows the layout of the template again.
+     */
+    public void reset() {
+        overriddenSlots = 0;
+        refresh();
+    }
+
+    /**
+     * Applies the current layout of the template to every slot that was not changed for this viewer.
+     */
+    public void refresh() {
+        ItemStack[] shared = template.getLayout().merged().items;
+
+        if (overriddenSlots == 0) {
+            contents = shared;
+            copied = false;
+        } else {
+            ItemStack[] merged = shared.clone();
+            for (long slots = overriddenSlots; slots != 0; slots &= slots - 1) {
+                int slot = Long.numberOfTrailingZeros(slots);
+                merged[slot] = contents[slot];
+            }
+            contents = merged;
+            copied = true;
+        }
+        inventory.setContents(contents);
+    }
+
+    /**
+     * Applies the given slots of the template layout to this inventory, skipping slots changed for this viewer.
+     *
+     * @param dirtySlots The mask of slots that changed in the template.
+     * @param shared     The current merged layout of the template.
+     */
+    void patch(long dirtySlots, ItemStack[] shared) {
+        if (!copied) {
+            contents = shared;
+        }
+
+        for (long slots = dirtySlots & ~overriddenSlots; slots != 0; slots &= slots - 1) {
+            int slot = Long.numberOfTrailingZeros(slots);
+            if (copied) contents[slot] = shared[slot];
+            inventory.setItem(slot, shared[slot]);
+        }
+    }
+
+    /**
+     * Checks if this inventory has been changed for its viewer.
+     *
+     * @return True if at least one slot differs from the template, false otherwise.
+     */
+    public boolean isModified() {
+        return overriddenSlots != 0;
+    }
+}
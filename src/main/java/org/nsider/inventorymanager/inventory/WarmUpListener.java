@@ -0,0 +1,17 @@
+package org.nsider.inventorymanager.inventory;
+
+/*
+ * The WarmUpListener interface is notified whenever an inventory was prepared during a warm-up.
+ */
+@FunctionalInterface
+public interface WarmUpListener {
+
+    /**
+     * Handles the progress of a warm-up. Called from the thread that prepared the inventory, not the main thread.
+     *
+     * @param entry     The timing of the prepared inventory.
+     * @param completed The amount of inventories prepared so far.
+     * @param total     The amount of inventories being warmed up.
+     */
+    void onProgress(WarmUpReport.Entry entry, int completed, int total);
+}
@@ -0,0 +1,72 @@
+package org.nsider.inventorymanager.inventory;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * The WarmUpReport class holds the timing of every inventory of a warm-up.
+ */
+@Getter
+public class WarmUpReport {
+
+    private final List<Entry> entries;
+    private final long prepareNanos;
+    private final long commitNanos;
+
+    WarmUpReport(List<Entry> entries, long prepareNanos, long commitNanos) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.prepareNanos = prepareNanos;
+        this.commitNanos = commitNanos;
+    }
+
+    /**
+     * Gets the amount of inventories that could not be prepared or loaded.
+     *
+     * @return The amount of failed inventories.
+     */
+    public int getFailedCount() {
+        int failed = 0;
+        for (Entry entry : entries) {
+            if (entry.failure != null) failed++;
+        }
+        return failed;
+    }
+
+    /*
+     * The timing of a single inventory.
+     */
+    @Getter
+    public static class Entry {
+        private final String name;
+        private final InventoryBuilder builder;
+        private long prepareNanos;
+        private long commitNanos;
+        private Throwable failure;
+
+        Entry(String name, InventoryBuilder builder) {
+            this.name = name;
+            this.builder = builder;
+        }
+
+        void prepared(long nanos, Throwable failure) {
+            this.prepareNanos = nanos;
+            this.failure = failure;
+        }
+
+        void committed(long nanos, Throwable failure) {
+            this.commitNanos = nanos;
+            this.failure = failure;
+        }
+
+        /**
+         * Checks if the inventory was prepared and committed.
+         *
+         * @return True if the warm-up of the inventory succeeded, false otherwise.
+         */
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+    }
+}
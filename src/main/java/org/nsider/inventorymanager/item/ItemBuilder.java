@@ -1,19 +1,39 @@
 package org.nsider.inventorymanager.item;
 
+import lombok.Getter;
+import lombok.Setter;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
-import org.nsider.inventorymanager.inventory.InventoryBuilder;
 import org.nsider.inventorymanager.inventory.InventoryHandler;
+import org.nsider.inventorymanager.utils.ItemTagUtils;
+import org.nsider.inventorymanager.utils.LongObjectMap;
 import org.nsider.inventorymanager.utils.MaterialUtils;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class ItemBuilder {
 
-    private static final Map<Long, ItemStack> idToItemMap = new IdentityHashMap<>();
-    private static final AtomicLong nextId = new AtomicLong(0);
+    /**
+     * -- GETTER --
+     * Returns the registry that assigns IDs to the created items.
+     */
+    @Getter private static final ItemRegistry registry = new ItemRegistry();
+
+    /**
+     * -- GETTER --
+     * Returns the cache of prototype items that fromItemData clones from.
+     */
+    @Getter private static final ItemTemplateCache templateCache = new ItemTemplateCache();
+
+    /**
+     * -- GETTER --
+     * Returns whether created items carry their registry ID inside the item.
+     * -- SETTER --
+     * Sets whether created items carry their registry ID inside the item. Should be set before any item is created.
+     */
+    @Getter @Setter private static volatile boolean identityTagging = false;
 
     /**
      * Gets or generates an ID for the given ItemStack.
@@ -22,15 +42,7 @@ public class ItemBuilder {
      * @return The ID associated with the item.
      */
     public static long getIdFor(ItemStack item) {
-        for (Map.Entry<Long, ItemStack> entry : idToItemMap.entrySet()) {
-            if (entry.getValue().equals(item)) {
-                return entry.getKey(); // Return the existing ID if item is found
-            }
-        }
-
-        long id = nextId.getAndIncrement(); // Generate a new ID
-        idToItemMap.put(id, item); // Associate the item with the new ID
-        return id; // Return the new ID
+        return registry.getIdFor(item);
     }
 
     /**
@@ -39,16 +51,25 @@ public class ItemBuilder {
      * @param id The ID of the item to be removed.
      */
     public static void removeItem(long id) {
-        idToItemMap.remove(id); // Remove the item associated with the given ID
+        registry.removeItem(id);
     }
 
     /**
-     * Returns an unmodifiable view of the mapping containing all items and their IDs.
+     * Returns a snapshot of the mapping containing all items and their IDs.
      *
-     * @return Unmodifiable map containing all items and their IDs.
+     * @return Unmodifiable snapshot containing all items and their IDs.
      */
     public static Map<Long, ItemStack> getAllItems() {
-        return Collections.unmodifiableMap(idToItemMap); // Return an unmodifiable view of the item map
+        return registry.getAllItems();
+    }
+
+    /**
+     * Passes every registered item and its ID to the given consumer without allocating an entry per item.
+     *
+     * @param consumer The consumer that receives each ID and item.
+     */
+    public static void forEachItem(LongObjectMap.EntryConsumer<? super ItemStack> consumer) {
+        registry.forEachItem(consumer);
     }
 
     /**
@@ -58,7 +79,7 @@ public class ItemBuilder {
      * @return The ItemStack associated with the provided ID.
      */
     public static ItemStack getItemForId(long id) {
-        return idToItemMap.get(id); // Retrieve the item associated with the given ID
+        return registry.getItemForId(id);
     }
 
 
@@ -70,26 +91,88 @@ public class ItemBuilder {
      * @return The created ItemStack with the specified properties.
      */
     public static ItemStack fromItemData(ItemData info, Material... forcedMaterial) {
+        Material forced = forcedMaterial.length == 0 ? null : forcedMaterial[0];
+        ItemStack item = templateCache.getItem(info, forced, () -> createItem(info, forced));
+        long id = getIdFor(item);
+        info.setID(id);
+
+        // A newly registered item is tagged in place, so the registry hands out the same tagged item for this ID.
+        return identityTagging ? ItemTagUtils.setId(item, id) : item;
+    }
+
+    /**
+     * Creates the ItemStacks for all given ItemData, registering them in the registry as one batch.
+     *
+     * @param infos The ItemData containing information about the items.
+     * @return The created ItemStacks, in the order of the list.
+     */
+    public static List<ItemStack> fromItemData(List<ItemData> infos) {
+        return fromItemData(infos, false);
+    }
+
+    /**
+     * Creates the ItemStacks for all given ItemData, registering them in the registry as one batch.
+     * If pinned, every item is pinned in the same step it is registered, so no item of the batch can be evicted before
+     * the caller holds on to it. The caller has to release each pin with {@code getRegistry().unpin(info.getID())}.
+     *
+     * @param infos The ItemData containing information about the items.
+     * @param pin   Whether to pin every item of the batch in the registry.
+     * @return The created ItemStacks, in the order of the list.
+     */
+    public static List<ItemStack> fromItemData(List<ItemData> infos, boolean pin) {
+        List<ItemStack> items = new ArrayList<>(infos.size());
+        for (ItemData info : infos) {
+            items.add(templateCache.getItem(info, null, () -> createItem(info, null)));
+        }
+
+        long[] ids = registry.getIdsFor(items, pin);
+        for (int i = 0; i < ids.length; i++) {
+            infos.get(i).setID(ids[i]);
+            if (identityTagging) ItemTagUtils.setId(items.get(i), ids[i]);
+        }
+        return items;
+    }
+
+    /**
+     * Resolves the registry ID of the given ItemStack.
+     * While identity tagging is enabled, items are resolved from the ID stored inside them as long as that ID is still
+     * registered for the same item. Other items, and items whose tag is stale, are matched by content.
+     *
+     * @param item The ItemStack to resolve.
+     * @return The registry ID of the item, or -1 if the item is not registered.
+     */
+    public static long resolveId(ItemStack item) {
+        if (identityTagging) {
+            long id = ItemTagUtils.getId(item);
+            // Tags outlive registry entries (evicted items, items from before a restart), so the ID has to be checked.
+            if (id >= 0) {
+                ItemStack registered = registry.getItemForId(id);
+                if (registered != null && registered.isSimilar(item)) return id;
+            }
+        }
+        return registry.findId(item);
+    }
+
+    /*
+     * Builds a new ItemStack from the given ItemData, resolving the material or skull texture.
+     */
+    private static ItemStack createItem(ItemData info, Material forcedMaterial) {
         if (info.getMaterial().contains("head-")) {
-            ItemStack item = MaterialUtils.addMeta(
+            return MaterialUtils.addMeta(
                     MaterialUtils.getCustomTextureHead(
                             info.getMaterial().split("-")[1]),
                             info.getAmount(),
                             info.getName(),
                             info.getLore()
             );
-            info.setID(getIdFor(item));
-            return item;
         } else {
-            Material material = forcedMaterial.length == 0 ? MaterialUtils.getMaterial(info.getMaterial()) : forcedMaterial[0];
-            ItemStack item = MaterialUtils.createItem(
+            Material material = forcedMaterial == null ? MaterialUtils.getMaterial(info.getMaterial()) : forcedMaterial;
+            return MaterialUtils.createItem(
                     material,
                     info.getAmount(),
                     info.getName(),
                     info.getLore()
             );
-            info.setID(getIdFor(item));
-            return item;
         }
     }
 
@@ -100,23 +183,7 @@ public class ItemBuilder {
      * @return The created ItemData object with the specified properties.
      */
     public static ItemData dataFromItemStack(ItemStack item) {
-        InventoryHandler handler = InventoryHandler.getInstance();
-
-        for (InventoryBuilder builder : handler.getInventories().values()) {
-            ConcurrentHashMap<ItemStack, List<Integer>> itemsMap = builder.getItemsMap();
-
-            if (itemsMap.containsKey(item)) {
-
-                for (ItemData itemData : builder.getItemDataList()) {
-                    if (itemData.getID() == getIdFor(item)) {
-                        return itemData;
-                    }
-                }
-            }
-
-        }
-
-
-        return null;
+        long id = resolveId(item);
+        return id < 0 ? null : InventoryHandler.getInstance().findItemData(id);
     }
 }
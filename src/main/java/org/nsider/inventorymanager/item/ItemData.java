@@ -2,6 +2,7 @@ package org.nsider.inventorymanager.item;
 
 
 import lombok.Data;
+import org.nsider.inventorymanager.utils.SlotMask;
 
 import java.util.List;
 
@@ -16,7 +17,7 @@ public class ItemData {
     private String material;
     private int amount;
     private long ID;
-    private List<Integer> slots;
+    private long slotMask;
 
     /**
      * Constructs an ItemData with default values.
@@ -24,6 +25,26 @@ public class ItemData {
     public ItemData() {
     }
 
+    /**
+     * Gets the slots of where the item will be put into.
+     * The slots are stored as a mask, so this returns a new list and changing it does not change the ItemData.
+     *
+     * @return the slots in ascending order.
+     */
+    public List<Integer> getSlots() {
+        return SlotMask.toList(slotMask);
+    }
+
+    /**
+     * Sets the slots of where the item will be put into.
+     *
+     * @param slots the slots to use the item in, null for no slots.
+     * @throws IllegalArgumentException if a slot is negative or higher than {@link SlotMask#MAX_SLOT}.
+     */
+    public void setSlots(List<Integer> slots) {
+        this.slotMask = SlotMask.of(slots);
+    }
+
     /**
      * Builder for ItemData with default values.
      *
@@ -94,7 +115,29 @@ public class ItemData {
          * @return the ItemDataBuilder with set slots.
          */
         public ItemDataBuilder setSlots(List<Integer> slots) {
-            itemData.slots = slots;
+            itemData.setSlots(slots);
+            return this;
+        }
+
+        /**
+         * Sets the slots of where the item will be put into.
+         *
+         * @param slots the slots to use the item in.
+         * @return the ItemDataBuilder with set slots.
+         */
+        public ItemDataBuilder setSlots(int... slots) {
+            itemData.slotMask = SlotMask.of(slots);
+            return this;
+        }
+
+        /**
+         * Sets the slots of where the item will be put into as a mask, where bit n is set to use slot n.
+         *
+         * @param slotMask the mask of the slots to use the item in.
+         * @return the ItemDataBuilder with set slots.
+         */
+        public ItemDataBuilder setSlotMask(long slotMask) {
+            itemData.slotMask = slotMask;
             return this;
         }
 
@@ -0,0 +1,315 @@
+package org.nsider.inventorymanager.item;
+
+import org.bukkit.inventory.ItemStack;
+import org.nsider.inventorymanager.utils.LongObjectMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ItemRegistry class assigns a unique ID to every distinct ItemStack and keeps both directions of that mapping.
+ * Items are matched by content (ItemStack#equals and ItemStack#hashCode), so looking up an ID from an item
+ * and an item from an ID are both hash lookups instead of scans over every registered item.
+ * <p>
+ * By default the registry is unbounded. After {@link #setMaxSize(int)} is used, the least recently used items are
+ * evicted once the limit is exceeded. Items that are pinned (held by a saved InventoryBuilder) are never evicted.
+ */
+public class ItemRegistry {
+
+    private final LongObjectMap<Entry> idToEntry;
+    private final Map<ItemStack, Entry> itemToEntry;
+    private final AtomicLong nextId;
+
+    // Doubly linked list of the unpinned entries, least recently used first.
+    private Entry head;
+    private Entry tail;
+
+    private int maxSize;
+    private int pinnedCount;
+    private long evictedCount;
+
+    /**
+     * Constructs an empty, unbounded ItemRegistry.
+     */
+    public ItemRegistry() {
+        this.idToEntry = new LongObjectMap<>();
+        this.itemToEntry = new HashMap<>();
+        this.nextId = new AtomicLong(0);
+        this.maxSize = 0;
+    }
+
+    /**
+     * Gets or generates an ID for the given ItemStack.
+     * A copy of the item is used as the lookup key, so changing the item afterwards does not corrupt the registry.
+     *
+     * @param item The ItemStack for which to get or generate an ID.
+     * @return The ID associated with the item.
+     */
+    public synchronized long getIdFor(ItemStack item) {
+        Entry existing = itemToEntry.get(item);
+        if (existing != null) {
+            touch(existing);
+            return existing.id;
+        }
+
+        evict(1);
+
+        Entry entry = new Entry(nextId.getAndIncrement(), item, item.clone());
+        idToEntry.put(entry.id, entry);
+        itemToEntry.put(entry.key, entry);
+        link(entry);
+        return entry.id;
+    }
+
+    /**
+     * Gets or generates the IDs for all given ItemStacks while holding the registry lock only once.
+     *
+     * @param items The ItemStacks for which to get or generate IDs.
+     * @return The IDs associated with the items, in the order of the list.
+     */
+    public long[] getIdsFor(List<ItemStack> items) {
+        return getIdsFor(items, false);
+    }
+
+    /**
+     * Gets or generates the IDs for all given ItemStacks while holding the registry lock only once.
+     * If pinned, every item is pinned as soon as it is registered, so registering a batch larger than the free
+     * capacity evicts older items instead of the items of the batch. Each pin has to be released with {@link #unpin(long)}.
+     *
+     * @param items The ItemStacks for which to get or generate IDs.
+     * @param pin   Whether to pin every item of the batch.
+     * @return The IDs associated with the items, in the order of the list.
+     */
+    public synchronized long[] getIdsFor(List<ItemStack> items, boolean pin) {
+        long[] ids = new long[items.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = getIdFor(items.get(i));
+            if (pin) pin(ids[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Looks up the ID of the given ItemStack without registering it.
+     *
+     * @param item The ItemStack to look up.
+     * @return The ID associated with the item, or -1 if the item is not registered.
+     */
+    public synchronized long findId(ItemStack item) {
+        Entry entry = itemToEntry.get(item);
+        if (entry == null) {
+            return -1;
+        }
+
+        touch(entry);
+        return entry.id;
+    }
+
+    /**
+     * Removes the item with the specified ID from both directions of the mapping, even if it is pinned.
+     *
+     * @param id The ID of the item to be removed.
+     */
+    public synchronized void removeItem(long id) {
+        Entry entry = idToEntry.remove(id);
+        if (entry == null) {
+            return;
+        }
+
+        itemToEntry.remove(entry.key);
+        if (entry.pins == 0) {
+            unlink(entry);
+        } else {
+            pinnedCount--;
+        }
+    }
+
+    /**
+     * Retrieves the ItemStack associated with the given ID.
+     *
+     * @param id The ID of the ItemStack to be retrieved.
+     * @return The ItemStack associated with the provided ID, or null if none is registered.
+     */
+    public synchronized ItemStack getItemForId(long id) {
+        Entry entry = idToEntry.get(id);
+        if (entry == null) {
+            return null;
+        }
+
+        touch(entry);
+        return entry.item;
+    }
+
+    /**
+     * Returns a copy of the mapping containing all items and their IDs, taken while holding the registry lock.
+     * Later registrations and evictions are not reflected in it, so it can be iterated from any thread.
+     *
+     * @return Unmodifiable snapshot containing all items and their IDs.
+     */
+    public synchronized Map<Long, ItemStack> getAllItems() {
+        Map<Long, ItemStack> snapshot = new HashMap<>(idToEntry.size() * 2);
+        idToEntry.forEach((id, entry) -> snapshot.put(id, entry.item));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Passes every registered item and its ID to the given consumer.
+     * Unlike iterating {@link #getAllItems()}, this does not box IDs or allocate an entry per item.
+     *
+     * @param consumer The consumer that receives each ID and item.
+     */
+    public synchronized void forEachItem(LongObjectMap.EntryConsumer<? super ItemStack> consumer) {
+        idToEntry.forEach((id, entry) -> consumer.accept(id, entry.item));
+    }
+
+    /**
+     * Pins the item with the given ID so it can not be evicted.
+     * Pins are counted, every call has to be matched by a call to {@link #unpin(long)}.
+     *
+     * @param id The ID of the item to pin.
+     */
+    public synchronized void pin(long id) {
+        Entry entry = idToEntry.get(id);
+        if (entry != null && entry.pins++ == 0) {
+            unlink(entry);
+            pinnedCount++;
+        }
+    }
+
+    /**
+     * Releases one pin of the item with the given ID.
+     * Once no pins are left the item becomes eligible for eviction again.
+     *
+     * @param id The ID of the item to unpin.
+     */
+    public synchronized void unpin(long id) {
+        Entry entry = idToEntry.get(id);
+        if (entry != null && entry.pins > 0 && --entry.pins == 0) {
+            pinnedCount--;
+            link(entry);
+            evict(0);
+        }
+    }
+
+    /**
+     * Sets the maximum amount of items kept in the registry.
+     * Pinned items are never evicted, so the registry can temporarily hold more items than this limit.
+     *
+     * @param maxSize The maximum amount of items, or 0 to keep every item.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Registry size limit can not be negative: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+        evict(0);
+    }
+
+    /**
+     * Gets the maximum amount of items kept in the registry.
+     *
+     * @return The maximum amount of items, or 0 if the registry is unbounded.
+     */
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of items currently registered (live items).
+     *
+     * @return The amount of registered items.
+     */
+    public synchronized int size() {
+        return idToEntry.size();
+    }
+
+    /**
+     * Gets the number of registered items that are currently pinned.
+     *
+     * @return The amount of pinned items.
+     */
+    public synchronized int getPinnedCount() {
+        return pinnedCount;
+    }
+
+    /**
+     * Gets the number of items that were evicted because of the size limit.
+     *
+     * @return The total amount of evicted items.
+     */
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    /*
+     * Evicts least recently used entries until the given amount of new entries fits into the size limit.
+     */
+    private void evict(int incoming) {
+        if (maxSize == 0) {
+            return;
+        }
+
+        while (head != null && idToEntry.size() + incoming > maxSize) {
+            Entry eldest = head;
+            unlink(eldest);
+            idToEntry.remove(eldest.id);
+            itemToEntry.remove(eldest.key);
+            evictedCount++;
+        }
+    }
+
+    private void touch(Entry entry) {
+        if (entry.pins == 0 && entry != tail) {
+            unlink(entry);
+            link(entry);
+        }
+    }
+
+    private void link(Entry entry) {
+        entry.prev = tail;
+        entry.next = null;
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.next = entry;
+        }
+        tail = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev == null) {
+            head = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next == null) {
+            tail = entry.prev;
+        } else {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    /*
+     * A registered item together with its private lookup key and eviction bookkeeping.
+     */
+    private static final class Entry {
+        private final long id;
+        private final ItemStack item;
+        private final ItemStack key;
+        private int pins;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(long id, ItemStack item, ItemStack key) {
+            this.id = id;
+            this.item = item;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.nsider.inventorymanager.item;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The ItemTemplateCache class memoizes built ItemStacks by the content of the ItemData they were built from.
+ * The first build of a material, amount, name and lore combination is kept as a prototype, later builds only clone it
+ * so material parsing, meta creation and skull texture reflection run once per distinct item.
+ * <p>
+ * The cache holds at most {@link #DEFAULT_MAX_SIZE} prototypes unless changed with {@link #setMaxSize(int)},
+ * the least recently used prototypes are evicted first. An evicted prototype is simply rebuilt on its next use.
+ */
+public class ItemTemplateCache {
+
+    /**
+     * The amount of prototypes kept by a new cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private volatile Cache<TemplateKey, ItemStack> templates;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private int maxSize;
+
+    /**
+     * Constructs an empty ItemTemplateCache that holds at most {@link #DEFAULT_MAX_SIZE} prototypes.
+     */
+    public ItemTemplateCache() {
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+        this.maxSize = DEFAULT_MAX_SIZE;
+        this.templates = createCache(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Gets a copy of the prototype built for the given ItemData, building the prototype on the first request.
+     *
+     * @param info           The ItemData containing information about the item.
+     * @param forcedMaterial The Material forced for the item, or null if the material of the ItemData is used.
+     * @param factory        Builds the prototype when there is none cached yet.
+     * @return A new copy of the prototype, or null if the factory could not build the item.
+     */
+    public ItemStack getItem(ItemData info, Material forcedMaterial, Supplier<ItemStack> factory) {
+        TemplateKey key = new TemplateKey(info.getMaterial(), info.getAmount(), info.getName(), info.getLore(), forcedMaterial);
+        ItemStack template = templates.getIfPresent(key);
+
+        if (template != null) {
+            hits.incrementAndGet();
+            return template.clone();
+        }
+
+        misses.incrementAndGet();
+        ItemStack item = factory.get();
+        if (item != null) {
+            // The lookup key still references the lore list of the ItemData, so store a copy that can not change.
+            templates.asMap().putIfAbsent(key.snapshot(), item.clone());
+        }
+        return item;
+    }
+
+    /**
+     * Removes every cached prototype, forcing the next builds to rebuild them.
+     */
+    public void clear() {
+        templates.invalidateAll();
+    }
+
+    /**
+     * Sets the maximum amount of prototypes kept in the cache.
+     * Lowering the limit evicts the least recently used prototypes right away.
+     *
+     * @param maxSize The maximum amount of prototypes, or 0 to keep every prototype.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Template cache size limit can not be negative: " + maxSize);
+        }
+
+        Cache<TemplateKey, ItemStack> resized = createCache(maxSize);
+        resized.putAll(templates.asMap());
+        this.templates = resized;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the maximum amount of prototypes kept in the cache.
+     *
+     * @return The maximum amount of prototypes, or 0 if the cache is unbounded.
+     */
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of cached prototypes.
+     *
+     * @return The amount of cached prototypes.
+     */
+    public int size() {
+        return (int) templates.size();
+    }
+
+    /**
+     * Gets the number of builds that were served from a cached prototype.
+     *
+     * @return The amount of cache hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of builds that had to create a new prototype.
+     *
+     * @return The amount of cache misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of prototypes that were evicted because of the size limit.
+     *
+     * @return The total amount of evicted prototypes.
+     */
+    public long getEvictedCount() {
+        return evictions.get();
+    }
+
+    private Cache<TemplateKey, ItemStack> createCache(int maxSize) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (maxSize > 0) builder.maximumSize(maxSize);
+        return builder.<TemplateKey, ItemStack>removalListener(notification -> {
+            if (notification.getCause() == RemovalCause.SIZE) evictions.incrementAndGet();
+        }).build();
+    }
+
+    /*
+     * The content of an ItemData that decides how its ItemStack looks.
+     */
+    private static final class TemplateKey {
+        private final String material;
+        private final int amount;
+        private final String name;
+        private final List<String> lore;
+        private final Material forcedMaterial;
+        private final int hash;
+
+        private TemplateKey(String material, int amount, String name, List<String> lore, Material forcedMaterial) {
+            this.material = material;
+            this.amount = amount;
+            this.name = name;
+            this.lore = lore;
+            this.forcedMaterial = forcedMaterial;
+            this.hash = Objects.hash(material, amount, name, lore, forcedMaterial);
+        }
+
+        private TemplateKey snapshot() {
+            List<String> copy = lore == null ? null : Collections.unmodifiableList(new ArrayList<>(lore));
+            return new TemplateKey(material, amount, name, copy, forcedMaterial);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TemplateKey)) return false;
+
+            TemplateKey other = (TemplateKey) o;
+            return hash == other.hash
+                    && amount == other.amount
+                    && forcedMaterial == other.forcedMaterial
+                    && Objects.equals(material, other.material)
+                    && Objects.equals(name, other.name)
+                    && Objects.equals(lore, other.lore);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
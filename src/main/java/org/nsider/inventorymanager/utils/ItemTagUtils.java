@@ -0,0 +1,166 @@
+package org.nsider.inventorymanager.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.nsider.inventorymanager.extras.Nonnull;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility class to store a numeric ID inside an ItemStack and read it back.
+ * On 1.14+ the ID is stored in the PersistentDataContainer of the item meta. Older versions don't have a
+ * container, so the ID is appended to the display name (or lore) as invisible color codes. Items without a display
+ * name and lore are not tagged on those versions, since the ID would need a visible blank lore line.
+ */
+public class ItemTagUtils {
+    private static final String NAMESPACE = "inventorymanager";
+    private static final String KEY = "item_id";
+    private static final char COLOR_CHAR = '\u00A7';
+    private static final String LEGACY_MARKER = COLOR_CHAR + "r" + COLOR_CHAR + "k" + COLOR_CHAR + "r";
+    private static final int LEGACY_ID_LENGTH = 32;
+
+    /**
+     * Stores the given ID in the item.
+     * Before 1.14 items without a display name and lore are returned unchanged, they are resolved by content instead.
+     *
+     * @param item The ItemStack to tag.
+     * @param id   The ID to store, must not be negative.
+     * @return The tagged item.
+     */
+    public static ItemStack setId(@Nonnull ItemStack item, long id) {
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return item;
+
+        if (PersistentData.AVAILABLE) {
+            try {
+                Object container = PersistentData.GET_CONTAINER_METHOD.invoke(meta);
+                PersistentData.CONTAINER_SET_METHOD.invoke(container, PersistentData.NAMESPACED_KEY, PersistentData.LONG_TYPE, id);
+                item.setItemMeta(meta);
+                return item;
+            } catch (ReflectiveOperationException e) {
+                Bukkit.getLogger().severe("An exception occurred while tagging item with ID " + id);
+                return item;
+            }
+        }
+
+        String tag = encodeLegacyId(id);
+        List<String> lore = meta.getLore();
+        if (meta.hasDisplayName()) {
+            meta.setDisplayName(meta.getDisplayName() + tag);
+        } else if (lore != null && !lore.isEmpty()) {
+            lore = new ArrayList<>(lore);
+            lore.set(lore.size() - 1, lore.get(lore.size() - 1) + tag);
+            meta.setLore(lore);
+        } else {
+            // Without a name or lore there is no text to hide the ID in, a lore line only for the ID would be visible.
+            return item;
+        }
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    /**
+     * Reads the ID stored in the item by {@link #setId(ItemStack, long)}.
+     *
+     * @param item The ItemStack to read.
+     * @return The stored ID, or -1 if the item has no ID.
+     */
+    public static long getId(ItemStack item) {
+        if (item == null || !item.hasItemMeta()) return -1;
+        ItemMeta meta = item.getItemMeta();
+
+        if (PersistentData.AVAILABLE) {
+            try {
+                Object container = PersistentData.GET_CONTAINER_METHOD.invoke(meta);
+                Object id = PersistentData.CONTAINER_GET_METHOD.invoke(container, PersistentData.NAMESPACED_KEY, PersistentData.LONG_TYPE);
+                return id == null ? -1 : (Long) id;
+            } catch (ReflectiveOperationException e) {
+                Bukkit.getLogger().severe("An exception occurred while reading item ID");
+                return -1;
+            }
+        }
+
+        if (meta.hasDisplayName()) {
+            long id = decodeLegacyId(meta.getDisplayName());
+            if (id >= 0) return id;
+        }
+        List<String> lore = meta.getLore();
+        return lore == null || lore.isEmpty() ? -1 : decodeLegacyId(lore.get(lore.size() - 1));
+    }
+
+    /*
+     * Resolves the PersistentDataContainer API through reflection, since the project compiles against 1.8.
+     * The lookup runs once when the class is first used, the JVM publishes the result to every thread without locking.
+     */
+    private static final class PersistentData {
+        private static final boolean AVAILABLE;
+        private static final Method GET_CONTAINER_METHOD;
+        private static final Method CONTAINER_SET_METHOD;
+        private static final Method CONTAINER_GET_METHOD;
+        private static final Object NAMESPACED_KEY;
+        private static final Object LONG_TYPE;
+
+        static {
+            Method getContainer = null;
+            Method containerSet = null;
+            Method containerGet = null;
+            Object namespacedKey = null;
+            Object longType = null;
+
+            if (GeneralUtils.getMCVersion() >= 14) {
+                try {
+                    Class<?> keyClass = Class.forName("org.bukkit.NamespacedKey");
+                    Class<?> containerClass = Class.forName("org.bukkit.persistence.PersistentDataContainer");
+                    Class<?> typeClass = Class.forName("org.bukkit.persistence.PersistentDataType");
+
+                    Constructor<?> keyConstructor = keyClass.getConstructor(String.class, String.class);
+                    namespacedKey = keyConstructor.newInstance(NAMESPACE, KEY);
+                    longType = typeClass.getField("LONG").get(null);
+                    getContainer = ItemMeta.class.getMethod("getPersistentDataContainer");
+                    containerSet = containerClass.getMethod("set", keyClass, typeClass, Object.class);
+                    containerGet = containerClass.getMethod("get", keyClass, typeClass);
+                } catch (ReflectiveOperationException e) {
+                    Bukkit.getLogger().severe("Failed to access PersistentDataContainer, falling back to legacy item tags");
+                    getContainer = null;
+                }
+            }
+
+            AVAILABLE = getContainer != null;
+            GET_CONTAINER_METHOD = getContainer;
+            CONTAINER_SET_METHOD = containerSet;
+            CONTAINER_GET_METHOD = containerGet;
+            NAMESPACED_KEY = namespacedKey;
+            LONG_TYPE = longType;
+        }
+    }
+
+    private static String encodeLegacyId(long id) {
+        String hex = Long.toHexString(id);
+        StringBuilder builder = new StringBuilder(LEGACY_MARKER.length() + LEGACY_ID_LENGTH);
+        builder.append(LEGACY_MARKER);
+        for (int i = hex.length(); i < 16; i++) {
+            builder.append(COLOR_CHAR).append('0');
+        }
+        for (int i = 0; i < hex.length(); i++) {
+            builder.append(COLOR_CHAR).append(hex.charAt(i));
+        }
+        return builder.toString();
+    }
+
+    private static long decodeLegacyId(String text) {
+        int start = text.length() - LEGACY_ID_LENGTH;
+        if (start < LEGACY_MARKER.length() || !text.startsWith(LEGACY_MARKER, start - LEGACY_MARKER.length())) return -1;
+
+        long id = 0;
+        for (int i = start; i < text.length(); i += 2) {
+            int digit = Character.digit(text.charAt(i + 1), 16);
+            if (text.charAt(i) != COLOR_CHAR || digit < 0) return -1;
+            id = (id << 4) | digit;
+        }
+        return id;
+    }
+}
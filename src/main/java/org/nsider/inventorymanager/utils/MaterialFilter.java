@@ -0,0 +1,137 @@
+package org.nsider.inventorymanager.utils;
+
+import org.bukkit.inventory.ItemStack;
+import org.nsider.inventorymanager.extras.Nonnull;
+import org.nsider.inventorymanager.extras.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled list of material names, matching the same materials as {@link XMaterial#isOneOf(Collection)}.
+ * Every entry of the list is evaluated against all XMaterials once when the filter is compiled,
+ * so checking a material afterwards is a single bit test.
+ * <p>
+ * <b>Example:</b>
+ * <blockquote><pre>
+ *     MaterialFilter disabled = MaterialFilter.compile(plugin.getConfig().getStringList("disabled-items"));
+ *     if (disabled.matches(item)) return;
+ * </pre></blockquote>
+ */
+public class MaterialFilter {
+
+    private static final MaterialFilter EMPTY = new MaterialFilter(EnumSet.noneOf(XMaterial.class), new long[0]);
+
+    private final Set<XMaterial> exact;
+    private final long[] members;
+
+    private MaterialFilter(EnumSet<XMaterial> exact, long[] members) {
+        this.exact = Collections.unmodifiableSet(exact);
+        this.members = members;
+    }
+
+    /**
+     * Compiles the list of material names into a filter.
+     * Supports the {@code CONTAINS:NAME} and {@code REGEX:PATTERN} formats of {@link XMaterial#isOneOf(Collection)},
+     * invalid patterns are reported and skipped like they are there.
+     *
+     * @param materials The material names, may be null.
+     * @return The compiled filter, matching nothing if the list is null or empty.
+     */
+    @Nonnull
+    public static MaterialFilter compile(@Nullable Collection<String> materials) {
+        if (materials == null || materials.isEmpty()) return EMPTY;
+
+        EnumSet<XMaterial> exact = EnumSet.noneOf(XMaterial.class);
+        List<String> contains = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+
+        for (String comp : materials) {
+            String checker = comp.toUpperCase(Locale.ENGLISH);
+            if (checker.startsWith("CONTAINS:")) {
+                contains.add(XMaterial.format(checker.substring(9)));
+                continue;
+            }
+            if (checker.startsWith("REGEX:")) {
+                try {
+                    patterns.add(Pattern.compile(comp.substring(6)));
+                } catch (PatternSyntaxException ex) {
+                    ex.printStackTrace();
+                }
+                continue;
+            }
+
+            XMaterial.matchXMaterial(comp).ifPresent(exact::add);
+        }
+
+        XMaterial[] values = XMaterial.values();
+        long[] members = new long[(values.length + 63) >>> 6];
+        for (XMaterial material : values) {
+            if (exact.contains(material) || matchesAny(material.name(), contains, patterns)) {
+                members[material.ordinal() >>> 6] |= 1L << material.ordinal();
+            }
+        }
+        return new MaterialFilter(exact, members);
+    }
+
+    /**
+     * Checks if the filter matches the given material.
+     *
+     * @param material The material to check, may be null.
+     * @return True if one of the compiled material names matches the material, false otherwise.
+     */
+    public boolean matches(@Nullable XMaterial material) {
+        if (material == null) return false;
+
+        int ordinal = material.ordinal();
+        return (ordinal >>> 6) < members.length && (members[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Checks if the filter matches the material of the given item.
+     *
+     * @param item The item to check, may be null.
+     * @return True if one of the compiled material names matches the item's material, false otherwise.
+     */
+    public boolean matches(@Nullable ItemStack item) {
+        if (item == null) return false;
+
+        try {
+            return matches(XMaterial.matchXMaterial(item));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the materials that were named directly, without the {@code CONTAINS} and {@code REGEX} formats.
+     *
+     * @return An unmodifiable set of the named materials.
+     */
+    public Set<XMaterial> getExactMaterials() {
+        return exact;
+    }
+
+    /**
+     * Checks if the filter matches no material at all.
+     *
+     * @return True if no material matches, false otherwise.
+     */
+    public boolean isEmpty() {
+        for (long word : members) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesAny(String name, List<String> contains, List<Pattern> patterns) {
+        for (String comp : contains) {
+            if (name.contains(comp)) return true;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) return true;
+        }
+        return false;
+    }
+}
@@ -9,26 +9,100 @@ import org.nsider.inventorymanager.extras.Nonnull;
 import org.nsider.inventorymanager.extras.Nullable;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MaterialUtils {
 
+    /*
+     * Resolved materials by the exact string they were requested with. Names of materials this server version does not
+     * have and invalid names are stored as markers, so a string is only ever parsed once.
+     */
+    private static final Map<String, Object> RESOLVED_MATERIALS = new ConcurrentHashMap<>();
+    private static final Object UNSUPPORTED = new Object();
+    private static final Object INVALID = new Object();
+
+    // Invalid names can come from user input, so only this many of them are remembered.
+    private static final int MAX_INVALID_NAMES = 1024;
+    private static final AtomicInteger INVALID_NAMES = new AtomicInteger();
+
     /**
      * Retrieves the Material based on its name/id.
+     * Accepts material names, legacy names with data ({@code WOOL:14}) and numeric IDs ({@code 35} or {@code 35:14}).
+     * Every string is resolved once, later calls with the same string are a single map lookup.
      *
      * @param name The name of the material.
-     * @return The corresponding Material.
+     * @return The corresponding Material, or null if the material does not exist in this server version.
      * @throws IllegalArgumentException If the material name is invalid.
      */
     public static Material getMaterial(String name) {
+        if (name == null) throw new IllegalArgumentException("Invalid material: null");
 
-        XMaterial xMaterial = XMaterial.matchXMaterial(name)
-                .orElseThrow(() -> new IllegalArgumentException("Invalid material: " + name));
-        Material material = null;
-        if (xMaterial != null) {
-            material = xMaterial.parseMaterial();
+        Object resolved = RESOLVED_MATERIALS.get(name);
+        if (resolved == null) resolved = resolveMaterial(name);
+
+        if (resolved == INVALID) throw new IllegalArgumentException("Invalid material: " + name);
+        return resolved == UNSUPPORTED ? null : (Material) resolved;
+    }
+
+    /**
+     * Resolves the names of all materials up front, so later lookups by those names never parse.
+     * Optional, names are otherwise resolved on their first lookup.
+     */
+    public static void precompileMaterials() {
+        for (XMaterial material : XMaterial.VALUES) {
+            Material parsed = material.parseMaterial();
+            RESOLVED_MATERIALS.putIfAbsent(material.name(), parsed == null ? UNSUPPORTED : parsed);
         }
+    }
 
-        return material;
+    /*
+     * Parses the given string and stores the result in the resolution table.
+     */
+    private static Object resolveMaterial(String name) {
+        Optional<XMaterial> match;
+        try {
+            match = matchMaterial(name);
+        } catch (IllegalArgumentException e) {
+            match = Optional.empty();
+        }
+
+        Object resolved = INVALID;
+        if (match.isPresent()) {
+            Material material = match.get().parseMaterial();
+            resolved = material == null ? UNSUPPORTED : material;
+        }
+
+        if (resolved != INVALID || INVALID_NAMES.get() < MAX_INVALID_NAMES) {
+            if (RESOLVED_MATERIALS.putIfAbsent(name, resolved) == null && resolved == INVALID) {
+                INVALID_NAMES.incrementAndGet();
+            }
+        }
+        return resolved;
+    }
+
+    /*
+     * Matches a material name, a legacy name with data or a numeric ID with optional data.
+     */
+    @SuppressWarnings("deprecation")
+    private static Optional<XMaterial> matchMaterial(String name) {
+        String trimmed = name.trim();
+        if (trimmed.isEmpty() || !Character.isDigit(trimmed.charAt(0))) {
+            return XMaterial.matchXMaterial(name);
+        }
+
+        try {
+            int separator = trimmed.indexOf(':');
+            if (separator == -1) return XMaterial.matchXMaterial(Integer.parseInt(trimmed), (byte) 0);
+
+            int id = Integer.parseInt(trimmed.substring(0, separator).trim());
+            byte data = Byte.parseByte(trimmed.substring(separator + 1).trim());
+            return XMaterial.matchXMaterial(id, data);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
     }
 
     /**
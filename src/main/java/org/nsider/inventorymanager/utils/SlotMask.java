@@ -0,0 +1,138 @@
+package org.nsider.inventorymanager.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utility class for slot masks, a long where bit n is set when slot n is used.
+ * Inventories have at most 54 slots, so every slot of an inventory fits into a single mask.
+ */
+public class SlotMask {
+
+    /**
+     * The highest slot a mask can hold.
+     */
+    public static final int MAX_SLOT = 63;
+
+    /**
+     * Creates a mask from the given slots.
+     *
+     * @param slots The slots to include.
+     * @return The mask of the slots.
+     * @throws IllegalArgumentException If a slot is negative or higher than {@link #MAX_SLOT}.
+     */
+    public static long of(int... slots) {
+        long mask = 0;
+        for (int slot : slots) {
+            mask |= bit(slot);
+        }
+        return mask;
+    }
+
+    /**
+     * Creates a mask from the given slots.
+     *
+     * @param slots The slots to include, may be null.
+     * @return The mask of the slots, 0 if the collection is null.
+     * @throws IllegalArgumentException If a slot is negative or higher than {@link #MAX_SLOT}.
+     */
+    public static long of(Collection<Integer> slots) {
+        if (slots == null) return 0;
+
+        long mask = 0;
+        for (int slot : slots) {
+            mask |= bit(slot);
+        }
+        return mask;
+    }
+
+    /**
+     * Creates a mask of every slot of an inventory with the given size.
+     *
+     * @param size The size of the inventory.
+     * @return The mask of slots 0 to size - 1.
+     */
+    public static long range(int size) {
+        return size > MAX_SLOT ? -1L : (1L << size) - 1;
+    }
+
+    /**
+     * Converts the mask into a list of slots.
+     *
+     * @param mask The mask to convert.
+     * @return A new list with the slots of the mask in ascending order.
+     */
+    public static List<Integer> toList(long mask) {
+        List<Integer> slots = new ArrayList<>(Long.bitCount(mask));
+        for (; mask != 0; mask &= mask - 1) {
+            slots.add(Long.numberOfTrailingZeros(mask));
+        }
+        return slots;
+    }
+
+    /**
+     * Converts the mask into an array of slots.
+     *
+     * @param mask The mask to convert.
+     * @return The slots of the mask in ascending order.
+     */
+    public static int[] toArray(long mask) {
+        int[] slots = new int[Long.bitCount(mask)];
+        for (int i = 0; mask != 0; mask &= mask - 1) {
+            slots[i++] = Long.numberOfTrailingZeros(mask);
+        }
+        return slots;
+    }
+
+    /**
+     * Checks if the mask contains the given slot.
+     *
+     * @param mask The mask to check.
+     * @param slot The slot to look for.
+     * @return True if the slot is part of the mask, false otherwise.
+     */
+    public static boolean contains(long mask, int slot) {
+        return slot >= 0 && slot <= MAX_SLOT && (mask & (1L << slot)) != 0;
+    }
+
+    /**
+     * Checks if two masks share at least one slot.
+     *
+     * @param first  The first mask.
+     * @param second The second mask.
+     * @return True if a slot is part of both masks, false otherwise.
+     */
+    public static boolean overlaps(long first, long second) {
+        return (first & second) != 0;
+    }
+
+    /**
+     * Finds the lowest slot of an inventory with the given size that is not part of the mask.
+     *
+     * @param mask The mask of used slots.
+     * @param size The size of the inventory.
+     * @return The first free slot, or -1 if every slot is used.
+     */
+    public static int firstFree(long mask, int size) {
+        long free = ~mask & range(size);
+        return free == 0 ? -1 : Long.numberOfTrailingZeros(free);
+    }
+
+    /**
+     * Gets the highest slot of the mask.
+     *
+     * @param mask The mask to check.
+     * @return The highest slot, or -1 if the mask is empty.
+     */
+    public static int highest(long mask) {
+        return MAX_SLOT - Long.numberOfLeadingZeros(mask);
+    }
+
+    private static long bit(int slot) {
+        if (slot < 0 || slot > MAX_SLOT) {
+            throw new IllegalArgumentException("Slot " + slot + " can not be stored in a slot mask");
+        }
+        return 1L << slot;
+    }
+}
@@ -1790,26 +1790,22 @@ public enum XMaterial {
     @Nonnull
     private final String[] legacy;
     /**
-     * The cached Bukkit parsed material.
+     * The cached Bukkit parsed material, only valid once {@link #resolved} is set.
      *
      * @see #parseMaterial()
      * @since 9.0.0
      */
     @Nullable
-    private final Material material;
+    private Material material;
+    /**
+     * If {@link #material} was parsed. Materials are parsed on first use instead of in the constructor,
+     * so loading this class does not look up every material and its legacy names.
+     */
+    private volatile boolean resolved;
 
     XMaterial(int data, @Nonnull String... legacy) {
         this.data = (byte) data;
         this.legacy = legacy;
-
-        Material mat = null;
-        if ((!Data.ISFLAT && this.isDuplicated()) || (mat = Material.getMaterial(this.name())) == null) {
-            for (int i = legacy.length - 1; i >= 0; i--) {
-                mat = Material.getMaterial(legacy[i]);
-                if (mat != null) break;
-            }
-        }
-        this.material = mat;
     }
 
     XMaterial(String... legacy) {
@@ -1937,6 +1933,8 @@ public enum XMaterial {
     /**
      * Parses the given item as an XMaterial using its material and data value (durability)
      * if not a damageable item {@link ItemStack#getDurability()}.
+     * Results are remembered by material and data value in {@link MaterialIndex}, so matching the same kind of item
+     * again is an array lookup.
      *
      * @param item the ItemStack to match.
      * @return an XMaterial if matched any.
@@ -1948,20 +1946,40 @@ public enum XMaterial {
     @SuppressWarnings("deprecation")
     public static XMaterial matchXMaterial(@Nonnull ItemStack item) {
         Objects.requireNonNull(item, "Cannot match null ItemStack");
-        String material = item.getType().name();
-
-        // 1.13+ doesn't use data values at all.
-        // Maps are given different data values for different parts of the map also some plugins use negative values for custom images.
-        // Items that have durability, such as armor and tools don't use the data value to distinguish their material.
-        byte data = (byte) (Data.ISFLAT || material.equals("MAP") || item.getType().getMaxDurability() > 0 ? 0 : item.getDurability());
+        Material type = item.getType();
+        int ordinal = type.ordinal();
 
         // Potions used the items data value to store
         // information about the type of potion in 1.8
-        if (!supports(9) && material.endsWith("ION")) {
+        if (MaterialIndex.LEGACY_POTION[ordinal]) {
             // There's also 16000+ data value technique, but this is more reliable.
             return Potion.fromItemStack(item).isSplash() ? SPLASH_POTION : POTION;
         }
 
+        byte data = MaterialIndex.USES_DATA[ordinal] ? (byte) item.getDurability() : 0;
+        int index = data & 0xFF;
+        XMaterial[] matches = MaterialIndex.MATCHES[ordinal];
+        if (matches != null && matches[index] != null) return matches[index];
+
+        XMaterial match = matchXMaterial(type.name(), data);
+        if (matches == null) {
+            matches = new XMaterial[MaterialIndex.USES_DATA[ordinal] ? 256 : 1];
+            MaterialIndex.MATCHES[ordinal] = matches;
+        }
+        matches[index] = match;
+        return match;
+    }
+
+    /**
+     * Matches a material name and the data value of an item, the uncached part of {@link #matchXMaterial(ItemStack)}.
+     *
+     * @param material the name of the item's material.
+     * @param data     the data value of the item, already 0 for materials that don't use it.
+     * @return the matched XMaterial.
+     * @throws IllegalArgumentException if no XMaterial matches.
+     */
+    @Nonnull
+    private static XMaterial matchXMaterial(@Nonnull String material, byte data) {
         // Refer to the enum for info.
         // Currently, these are the only materials with a non-zero data value
         // that has been renamed after the flattening update.
@@ -1984,25 +2002,22 @@ public enum XMaterial {
 
     /**
      * Gets the XMaterial based on the material's ID (Magic Value) and data value.<br>
-     * You should avoid using this for performance issues.
+     * The lookup uses an index of all IDs that is built on the first call, see {@link IdIndex}.
      *
      * @param id   the ID (Magic value) of the material.
      * @param data the data value of the material.
      * @return a parsed XMaterial with the same ID and data value.
      * @see #matchXMaterial(ItemStack)
      * @since 2.0.0
-     * @deprecated this method loops through all the available materials and matches their ID using {@link #getId()}
-     * which takes a really long time. Plugins should no longer support IDs. If you want, you can make a {@link Map} cache yourself.
-     * This method obviously doesn't work for 1.13+ and will not be supported. This is only here for debugging purposes.
+     * @deprecated Plugins should no longer support IDs.
+     * This method obviously doesn't work for 1.13+ and will not be supported.
      */
     @Nonnull
     @Deprecated
     public static Optional<XMaterial> matchXMaterial(int id, byte data) {
         if (id < 0 || id > MAX_ID || data < 0) return Optional.empty();
-        for (XMaterial materials : VALUES) {
-            if (materials.data == data && materials.getId() == id) return Optional.of(materials);
-        }
-        return Optional.empty();
+        XMaterial[] dataValues = IdIndex.MATERIALS[id];
+        return dataValues == null || data >= dataValues.length ? Optional.empty() : Optional.ofNullable(dataValues[data]);
     }
 
     /**
@@ -2146,9 +2161,12 @@ public enum XMaterial {
      * If you want to use groups, use {@code (?: non-capturing groups)}. It's faster.
      * <p>
      * Want to learn RegEx? You can mess around in <a href="https://regexr.com/">RegExr</a> website.
+     * <p>
+     * This evaluates the whole list on every call, compile lists that are checked often with {@link MaterialFilter#compile(Collection)}.
      *
      * @param materials the material names to check base material on.
      * @return true if one of the given material names is similar to the base material.
+     * @see MaterialFilter
      * @since 3.1.1
      */
     public boolean isOneOf(@Nullable Collection<String> materials) {
@@ -2306,7 +2324,7 @@ public enum XMaterial {
      */
     @Nullable
     public Material parseMaterial() {
-        return this.material;
+        return this.resolveMaterial();
     }
 
     /**
@@ -2334,7 +2352,30 @@ public enum XMaterial {
      * @since 2.0.0
      */
     public boolean isSupported() {
-        return this.material != null;
+        return this.resolveMaterial() != null;
+    }
+
+    /**
+     * Parses the Bukkit material of this XMaterial on the first call and returns the cached result afterwards.
+     * Concurrent first calls may both parse, they always compute the same material.
+     *
+     * @return the parsed material or null if the material is not supported.
+     */
+    @Nullable
+    private Material resolveMaterial() {
+        if (!resolved) {
+            Material mat = null;
+            if ((!Data.ISFLAT && this.isDuplicated()) || (mat = Material.getMaterial(this.name())) == null) {
+                for (int i = legacy.length - 1; i >= 0; i--) {
+                    mat = Material.getMaterial(legacy[i]);
+                    if (mat != null) break;
+                }
+            }
+            this.material = mat;
+            // Written after the material, so a thread that sees the flag also sees the material.
+            this.resolved = true;
+        }
+        return this.material;
     }
 
     /**
@@ -2408,6 +2449,66 @@ public enum XMaterial {
         }
     }
 
+    /**
+     * Reverse index from Bukkit materials to XMaterials, used by {@link #matchXMaterial(ItemStack)}.
+     * Indexed by {@link Material#ordinal()}, the per material properties are computed once for this server version,
+     * matches are filled in by data value the first time an item of that kind is matched.
+     * Concurrent first matches may both compute the same XMaterial, which is harmless.
+     */
+    private static final class MaterialIndex {
+        /**
+         * If the data value (durability) of items of the material selects the XMaterial.
+         * 1.13+ doesn't use data values at all.
+         * Maps are given different data values for different parts of the map also some plugins use negative values for custom images.
+         * Items that have durability, such as armor and tools don't use the data value to distinguish their material.
+         */
+        private static final boolean[] USES_DATA;
+        /**
+         * If the material is a 1.8 potion, whose XMaterial depends on more than the data value.
+         */
+        private static final boolean[] LEGACY_POTION;
+        private static final XMaterial[][] MATCHES;
+
+        static {
+            Material[] materials = Material.values();
+            USES_DATA = new boolean[materials.length];
+            LEGACY_POTION = new boolean[materials.length];
+            MATCHES = new XMaterial[materials.length][];
+
+            for (Material material : materials) {
+                String name = material.name();
+                USES_DATA[material.ordinal()] = !Data.ISFLAT && !name.equals("MAP") && material.getMaxDurability() <= 0;
+                LEGACY_POTION[material.ordinal()] = !supports(9) && name.endsWith("ION");
+            }
+        }
+    }
+
+    /**
+     * Index of the materials by their ID (Magic Value) and data value, used by {@link #matchXMaterial(int, byte)}.
+     * The outer array is indexed by ID and each inner array by data value, the inner arrays are only as long as the
+     * highest data value of their ID, so the index stays small even though IDs go up to {@link #MAX_ID}.
+     * Built once when it is first used, which only happens for plugins that still use IDs.
+     */
+    private static final class IdIndex {
+        private static final XMaterial[][] MATERIALS = new XMaterial[MAX_ID + 1][];
+
+        static {
+            for (XMaterial material : VALUES) {
+                int id = material.getId();
+                if (id < 0 || id > MAX_ID || material.data < 0) continue;
+
+                XMaterial[] dataValues = MATERIALS[id];
+                if (dataValues == null || dataValues.length <= material.data) {
+                    XMaterial[] grown = new XMaterial[material.data + 1];
+                    if (dataValues != null) System.arraycopy(dataValues, 0, grown, 0, dataValues.length);
+                    MATERIALS[id] = dataValues = grown;
+                }
+                // The first material in declaration order wins, like the linear search this replaced.
+                if (dataValues[material.data] == null) dataValues[material.data] = material;
+            }
+        }
+    }
+
     /**
      * Used for data that need to be accessed during enum initialization.
      *
@@ -0,0 +1,69 @@
+package org.nsider.inventorymanager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+/*
+ * The BenchmarkServer class installs a minimal Bukkit server so benchmarks can run outside of a real server.
+ * It only answers the calls needed for version checks and for comparing meta-less ItemStacks.
+ */
+public class BenchmarkServer {
+
+    private static boolean installed = false;
+
+    /**
+     * Installs the server, reporting the given Minecraft version. Only the first call has an effect.
+     *
+     * @param minecraftVersion The version to report, e.g. "1.8.8".
+     */
+    public static synchronized void install(String minecraftVersion) {
+        if (installed) return;
+
+        ItemFactory itemFactory = (ItemFactory) Proxy.newProxyInstance(ItemFactory.class.getClassLoader(),
+                new Class<?>[]{ItemFactory.class}, (proxy, method, args) -> {
+                    // Benchmark items never have meta, so two metas are equal when both are missing.
+                    if (method.getName().equals("equals") && args != null && args.length == 2) {
+                        return args[0] == null && args[1] == null;
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+
+        Logger logger = Logger.getLogger("Benchmark");
+        Server server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(),
+                new Class<?>[]{Server.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getName":
+                            return "Benchmark";
+                        case "getVersion":
+                            return "git-Benchmark (MC: " + minecraftVersion + ")";
+                        case "getBukkitVersion":
+                            return minecraftVersion + "-R0.1-SNAPSHOT";
+                        case "getLogger":
+                            return logger;
+                        case "getItemFactory":
+                            return itemFactory;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+
+        Bukkit.setServer(server);
+        installed = true;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        return 0;
+    }
+}
@@ -0,0 +1,98 @@
+package org.nsider.inventorymanager.item;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.nsider.inventorymanager.BenchmarkServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The ItemRegistryBenchmark class compares the scaling of ItemRegistry.getIdFor with the linear scan it replaced.
+ * Every round registers N distinct meta-less items and then looks all of them up again, the way a catalog is built
+ * and rebuilt. The scan grows quadratically with N, the registry linearly.
+ *
+ * Run the main method with the test classpath, e.g. from the IDE or with
+ * java -cp target/classes:target/test-classes:<spigot-api.jar> org.nsider.inventorymanager.item.ItemRegistryBenchmark
+ */
+public class ItemRegistryBenchmark {
+
+    private static final int[] SIZES = {500, 1000, 2000, 4000, 8000};
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        BenchmarkServer.install("1.8.8");
+
+        // Let the JIT compile both paths before anything is measured.
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runLinearScan(createItems(1000));
+            runRegistry(createItems(1000));
+        }
+
+        System.out.printf("%8s %12s %12s %14s %18s%n", "items", "scan ms", "registry ms", "scan ns/item", "registry ns/item");
+        for (int size : SIZES) {
+            List<ItemStack> items = createItems(size);
+            long scan = runLinearScan(items);
+            long registry = runRegistry(items);
+            System.out.printf("%8d %12.2f %12.2f %14d %18d%n", size, scan / 1e6, registry / 1e6,
+                    scan / (2L * size), registry / (2L * size));
+        }
+    }
+
+    /*
+     * Distinct items that only differ in their durability, so equality never has to compare meta.
+     */
+    private static List<ItemStack> createItems(int size) {
+        List<ItemStack> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new ItemStack(Material.STONE, 1, (short) i));
+        }
+        return items;
+    }
+
+    private static long runRegistry(List<ItemStack> items) {
+        ItemRegistry registry = new ItemRegistry();
+        long start = System.nanoTime();
+        for (ItemStack item : items) {
+            registry.getIdFor(item);
+        }
+        for (ItemStack item : items) {
+            registry.getIdFor(item);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runLinearScan(List<ItemStack> items) {
+        LinearScanRegistry registry = new LinearScanRegistry();
+        long start = System.nanoTime();
+        for (ItemStack item : items) {
+            registry.getIdFor(item);
+        }
+        for (ItemStack item : items) {
+            registry.getIdFor(item);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /*
+     * The lookup ItemBuilder.getIdFor used before the ItemRegistry, comparing the item with every registered item.
+     */
+    private static final class LinearScanRegistry {
+        private final Map<Long, ItemStack> idToItemMap = new HashMap<>();
+        private long nextId;
+
+        private long getIdFor(ItemStack item) {
+            for (Map.Entry<Long, ItemStack> entry : idToItemMap.entrySet()) {
+                if (entry.getValue().equals(item)) {
+                    return entry.getKey();
+                }
+            }
+
+            long id = nextId++;
+            idToItemMap.put(id, item);
+            return id;
+        }
+    }
+}
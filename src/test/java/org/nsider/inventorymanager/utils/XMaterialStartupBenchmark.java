@@ -0,0 +1,42 @@
+package org.nsider.inventorymanager.utils;
+
+import org.bukkit.Material;
+import org.nsider.inventorymanager.BenchmarkServer;
+
+/*
+ * The XMaterialStartupBenchmark class measures what the first use of XMaterial costs at startup.
+ * It times the class initialization, the first lookup of a single material, and parsing every constant, which is
+ * the work the class initialization did before materials were parsed lazily.
+ *
+ * Class initialization can only be measured once per JVM, so run the main method in a fresh JVM with the test
+ * classpath, e.g. java -cp target/classes:target/test-classes:<spigot-api.jar> org.nsider.inventorymanager.utils.XMaterialStartupBenchmark
+ */
+public class XMaterialStartupBenchmark {
+
+    public static void main(String[] args) throws ClassNotFoundException {
+        BenchmarkServer.install(args.length > 0 ? args[0] : "1.8.8");
+        // Load Bukkit's Material first, so only XMaterial itself is measured.
+        int bukkitMaterials = Material.values().length;
+
+        long start = System.nanoTime();
+        Class.forName("org.nsider.inventorymanager.utils.XMaterial", true, XMaterialStartupBenchmark.class.getClassLoader());
+        long classInit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Material stone = XMaterial.matchXMaterial("STONE").map(XMaterial::parseMaterial).orElse(null);
+        long firstLookup = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int supported = 0;
+        for (XMaterial material : XMaterial.values()) {
+            if (material.parseMaterial() != null) supported++;
+        }
+        long parseAll = System.nanoTime() - start;
+
+        System.out.printf("Bukkit materials:            %d%n", bukkitMaterials);
+        System.out.printf("XMaterial constants:         %d (%d supported)%n", XMaterial.values().length, supported);
+        System.out.printf("Class initialization:        %.3f ms%n", classInit / 1e6);
+        System.out.printf("First lookup (STONE -> %s): %.3f ms%n", stone, firstLookup / 1e6);
+        System.out.printf("Parsing every constant:      %.3f ms (previously paid during class initialization)%n", parseAll / 1e6);
+    }
+}